@@ -0,0 +1,119 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import java.util.Hashtable;
+
+import org.hecl.HashThing;
+import org.hecl.HeclException;
+import org.hecl.IntThing;
+import org.hecl.ListThing;
+import org.hecl.Thing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * <code>CollectionBenchmark</code> measures list and hash commands,
+ * and converting ListThings and HashThings to and from strings.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class CollectionBenchmark extends HeclBenchmark {
+    /* The number of elements in the lists and hashes. */
+    @Param({"10", "1000"})
+    public int size;
+
+    private Thing[] items;
+    private Hashtable table;
+    private String liststr;
+    private String hashstr;
+
+    private Thing lappend;
+    private Thing lindex;
+    private Thing hset;
+    private Thing hget;
+
+    protected void setup() throws HeclException {
+	items = new Thing[size];
+	table = new Hashtable();
+	for (int i = 0; i < size; i++) {
+	    items[i] = new Thing("item " + i);
+	    table.put("key" + i, IntThing.create(i));
+	}
+	liststr = new ListThing(items, size).getStringRep();
+	hashstr = new HashThing(table).getStringRep();
+
+	interp.setVar("size", IntThing.create(size));
+	interp.setVar("l", new Thing(new ListThing(items, size)));
+	interp.setVar("h", new Thing(new HashThing(table)));
+	lappend = new Thing("set nl {}\n" +
+			    "for {set i 0} {< $i $size} {incr $i} {\n" +
+			    "    lappend $nl $i\n" +
+			    "}\n" +
+			    "llen $nl\n");
+	lindex = new Thing("lindex $l [/ $size 2]");
+	hset = new Thing("set nh [hash {}]\n" +
+			 "for {set i 0} {< $i $size} {incr $i} {\n" +
+			 "    hset $nh $i [copy $i]\n" +
+			 "}\n" +
+			 "set nh\n");
+	hget = new Thing("hget $h key0");
+    }
+
+    @Benchmark
+    public Thing lappend() throws HeclException {
+	return interp.eval(lappend);
+    }
+
+    @Benchmark
+    public Thing lindex() throws HeclException {
+	return interp.eval(lindex);
+    }
+
+    @Benchmark
+    public Thing hset() throws HeclException {
+	return interp.eval(hset);
+    }
+
+    @Benchmark
+    public Thing hget() throws HeclException {
+	return interp.eval(hget);
+    }
+
+    /* A new ListThing each time, as the string is kept once it's
+     * been worked out. */
+    @Benchmark
+    public String listToString() {
+	return new ListThing(items, size).getStringRep();
+    }
+
+    @Benchmark
+    public ListThing listFromString() throws HeclException {
+	return new ListThing(liststr);
+    }
+
+    @Benchmark
+    public String hashToString() {
+	return new HashThing(table).getStringRep();
+    }
+
+    @Benchmark
+    public HashThing hashFromString() throws HeclException {
+	return HashThing.getHash(new Thing(hashstr));
+    }
+}
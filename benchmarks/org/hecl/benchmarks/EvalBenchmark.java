@@ -0,0 +1,77 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import org.hecl.HeclException;
+import org.hecl.Thing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * <code>EvalBenchmark</code> measures <code>Interp.eval</code> of
+ * some representative scripts.  Each script is parsed once, so these
+ * measure running the code, not parsing it.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class EvalBenchmark extends HeclBenchmark {
+    private Thing whileloop;
+    private Thing fib;
+    private Thing foreachsum;
+    private Thing strings;
+
+    protected void setup() throws HeclException {
+	eval("proc fib {n} {\n" +
+	     "    if { < $n 2 } { return $n }\n" +
+	     "    return [+ [fib [- $n 1]] [fib [- $n 2]]]\n" +
+	     "}\n" +
+	     "set numbers {}\n" +
+	     "for {set i 0} {< $i 1000} {incr $i} { lappend $numbers [copy $i] }\n");
+
+	whileloop = new Thing("set i 0\n" +
+			      "while { < $i 1000 } { incr $i }\n");
+	fib = new Thing("fib 15");
+	foreachsum = new Thing("set sum 0\n" +
+			       "foreach n $numbers { incr $sum $n }\n" +
+			       "set sum\n");
+	strings = new Thing("set s {}\n" +
+			    "for {set i 0} {< $i 100} {incr $i} {\n" +
+			    "    append $s \"item $i \"\n" +
+			    "}\n" +
+			    "strlen [strupper $s]\n");
+    }
+
+    @Benchmark
+    public Thing whileLoop() throws HeclException {
+	return interp.eval(whileloop);
+    }
+
+    @Benchmark
+    public Thing fib() throws HeclException {
+	return interp.eval(fib);
+    }
+
+    @Benchmark
+    public Thing foreachSum() throws HeclException {
+	return interp.eval(foreachsum);
+    }
+
+    @Benchmark
+    public Thing strings() throws HeclException {
+	return interp.eval(strings);
+    }
+}
@@ -0,0 +1,74 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import org.hecl.HeclException;
+import org.hecl.Interp;
+import org.hecl.Thing;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * <code>HeclBenchmark</code> is the base of the JMH benchmarks.  It
+ * gives each benchmark thread its own interpreter, owned by that
+ * thread, so that eval runs the code directly rather than handing it
+ * to the interpreter's event loop.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+public abstract class HeclBenchmark {
+    protected Interp interp;
+
+    @Setup(Level.Trial)
+    public void setupInterp() throws HeclException {
+	interp = new Interp();
+	interp.setOwner(Thread.currentThread());
+	setup();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardownInterp() {
+	interp.setOwner(null);
+	interp.terminate();
+    }
+
+    /**
+     * The <code>setup</code> method is called once the interpreter
+     * has been created, to define procs and variables.
+     *
+     * @exception HeclException if an error occurs
+     */
+    protected void setup() throws HeclException {
+    }
+
+    /**
+     * The <code>eval</code> method evaluates <code>src</code> in the
+     * interpreter.
+     *
+     * @param src a <code>String</code> value
+     * @return a <code>Thing</code> value
+     * @exception HeclException if an error occurs
+     */
+    protected Thing eval(String src) throws HeclException {
+	return interp.eval(new Thing(src));
+    }
+}
@@ -0,0 +1,90 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import org.hecl.DoubleThing;
+import org.hecl.HeclException;
+import org.hecl.IntThing;
+import org.hecl.LongThing;
+import org.hecl.MathCmds;
+import org.hecl.NumberThing;
+import org.hecl.Thing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * <code>MathBenchmark</code> measures MathCmds arithmetic on ints,
+ * longs and doubles, on ints that overflow, and the same through
+ * the + command.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class MathBenchmark extends HeclBenchmark {
+    private NumberThing int1 = new IntThing(12345);
+    private NumberThing int2 = new IntThing(678);
+    private NumberThing intmax = new IntThing(Integer.MAX_VALUE);
+    private NumberThing long1 = new LongThing(123456789012L);
+    private NumberThing long2 = new LongThing(678L);
+    private NumberThing double1 = new DoubleThing(12345.5);
+    private NumberThing double2 = new DoubleThing(678.25);
+
+    private Thing plus;
+    private Thing expr;
+
+    protected void setup() throws HeclException {
+	interp.setVar("a", IntThing.create(12345));
+	interp.setVar("b", IntThing.create(678));
+	plus = new Thing("+ $a $b");
+	expr = new Thing("/ [* [+ $a $b] [- $a $b]] 7");
+    }
+
+    @Benchmark
+    public Thing addInt() throws HeclException {
+	return MathCmds.binary(MathCmds.BINADD, interp, int1, int2);
+    }
+
+    @Benchmark
+    public Thing addLong() throws HeclException {
+	return MathCmds.binary(MathCmds.BINADD, interp, long1, long2);
+    }
+
+    @Benchmark
+    public Thing addDouble() throws HeclException {
+	return MathCmds.binary(MathCmds.BINADD, interp, double1, double2);
+    }
+
+    @Benchmark
+    public Thing mulInt() throws HeclException {
+	return MathCmds.binary(MathCmds.BINMUL, interp, int1, int2);
+    }
+
+    /* Int plus int that doesn't fit in an int. */
+    @Benchmark
+    public Thing addOverflow() throws HeclException {
+	return MathCmds.binary(MathCmds.BINADD, interp, intmax, int2);
+    }
+
+    @Benchmark
+    public Thing evalPlus() throws HeclException {
+	return interp.eval(plus);
+    }
+
+    @Benchmark
+    public Thing evalExpr() throws HeclException {
+	return interp.eval(expr);
+    }
+}
@@ -0,0 +1,63 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import org.hecl.CodeThing;
+import org.hecl.HeclException;
+import org.hecl.Parse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * <code>ParseBenchmark</code> measures <code>Parse.parseToCode</code>
+ * on scripts of increasing size.  Each script is made of copies of a
+ * proc with a loop, string and list commands, nested [] and $ and
+ * quoted and braced words.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class ParseBenchmark extends HeclBenchmark {
+    private static final String PROCBODY =
+	" {a b} {\n" +
+	"    set res {}\n" +
+	"    # A comment.\n" +
+	"    for {set i 0} {< $i $a} {incr $i} {\n" +
+	"        lappend $res [list $i \"$b-$i\" [strlen $b]]\n" +
+	"    }\n" +
+	"    return [llen $res]\n" +
+	"}\n";
+
+    /* The number of procs in the script. */
+    @Param({"1", "100"})
+    public int procs;
+
+    private String src;
+
+    protected void setup() {
+	StringBuffer sb = new StringBuffer();
+	for (int i = 0; i < procs; i++) {
+	    sb.append("proc p").append(i).append(PROCBODY);
+	}
+	src = sb.toString();
+    }
+
+    @Benchmark
+    public CodeThing parseToCode() throws HeclException {
+	return new Parse(interp, src).parseToCode();
+    }
+}
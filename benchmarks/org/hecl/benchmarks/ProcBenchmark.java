@@ -0,0 +1,65 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import org.hecl.HeclException;
+import org.hecl.Thing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * <code>ProcBenchmark</code> measures the cost of calling procs,
+ * compared to calling a built in command with the same arguments.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class ProcBenchmark extends HeclBenchmark {
+    private Thing builtin;
+    private Thing noargs;
+    private Thing threeargs;
+    private Thing varargs;
+
+    protected void setup() throws HeclException {
+	eval("proc noargs {} {}\n" +
+	     "proc threeargs {a b c} { set c }\n" +
+	     "proc varargs {a args} { set args }\n");
+	builtin = new Thing("list 1 2 3");
+	noargs = new Thing("noargs");
+	threeargs = new Thing("threeargs 1 2 3");
+	varargs = new Thing("varargs 1 2 3");
+    }
+
+    @Benchmark
+    public Thing builtin() throws HeclException {
+	return interp.eval(builtin);
+    }
+
+    @Benchmark
+    public Thing noArgs() throws HeclException {
+	return interp.eval(noargs);
+    }
+
+    @Benchmark
+    public Thing threeArgs() throws HeclException {
+	return interp.eval(threeargs);
+    }
+
+    @Benchmark
+    public Thing varArgs() throws HeclException {
+	return interp.eval(varargs);
+    }
+}
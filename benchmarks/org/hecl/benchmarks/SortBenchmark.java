@@ -0,0 +1,86 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import java.util.Random;
+
+import org.hecl.HeclException;
+import org.hecl.IntThing;
+import org.hecl.ListThing;
+import org.hecl.Thing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * <code>SortBenchmark</code> measures the sort command on random
+ * lists of numbers and strings, and on a list that's already sorted.
+ * The lists are the same every run, so that results can be compared.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class SortBenchmark extends HeclBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    private Thing sortint;
+    private Thing sortstring;
+    private Thing sortsorted;
+    private Thing sortproc;
+
+    protected void setup() throws HeclException {
+	Random r = new Random(42);
+	Thing[] ints = new Thing[size];
+	Thing[] strings = new Thing[size];
+	Thing[] sorted = new Thing[size];
+	for (int i = 0; i < size; i++) {
+	    int n = r.nextInt(size * 10);
+	    ints[i] = IntThing.create(n);
+	    strings[i] = new Thing("s" + n);
+	    sorted[i] = IntThing.create(i);
+	}
+	interp.setVar("ints", new Thing(new ListThing(ints, size)));
+	interp.setVar("strings", new Thing(new ListThing(strings, size)));
+	interp.setVar("sorted", new Thing(new ListThing(sorted, size)));
+	eval("proc cmp {a b} { - $a $b }");
+
+	sortint = new Thing("sort $ints by int");
+	sortstring = new Thing("sort $strings");
+	sortsorted = new Thing("sort $sorted by int");
+	sortproc = new Thing("sort $ints by proc command cmp");
+    }
+
+    @Benchmark
+    public Thing sortInt() throws HeclException {
+	return interp.eval(sortint);
+    }
+
+    @Benchmark
+    public Thing sortString() throws HeclException {
+	return interp.eval(sortstring);
+    }
+
+    @Benchmark
+    public Thing sortSorted() throws HeclException {
+	return interp.eval(sortsorted);
+    }
+
+    @Benchmark
+    public Thing sortProc() throws HeclException {
+	return interp.eval(sortproc);
+    }
+}
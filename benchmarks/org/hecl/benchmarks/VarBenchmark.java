@@ -0,0 +1,73 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl.benchmarks;
+
+import org.hecl.HeclException;
+import org.hecl.IntThing;
+import org.hecl.Thing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * <code>VarBenchmark</code> measures getting and setting variables,
+ * both from Java and from scripts, at global level and in a proc.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class VarBenchmark extends HeclBenchmark {
+    private Thing value;
+    private Thing setglobal;
+    private Thing getglobal;
+    private Thing setlocal;
+
+    protected void setup() throws HeclException {
+	value = IntThing.create(42);
+	interp.setVar("x", value);
+	eval("proc locals {} {\n" +
+	     "    set a 1; set b $a; set c $b; set d $c; set e $d\n" +
+	     "}\n");
+	setglobal = new Thing("set x 42");
+	getglobal = new Thing("set x");
+	setlocal = new Thing("locals");
+    }
+
+    @Benchmark
+    public void setVar() {
+	interp.setVar("x", value);
+    }
+
+    @Benchmark
+    public Thing getVar() throws HeclException {
+	return interp.getVar("x");
+    }
+
+    @Benchmark
+    public Thing evalSet() throws HeclException {
+	return interp.eval(setglobal);
+    }
+
+    @Benchmark
+    public Thing evalGet() throws HeclException {
+	return interp.eval(getglobal);
+    }
+
+    /* A proc call plus five local sets and gets. */
+    @Benchmark
+    public Thing evalLocals() throws HeclException {
+	return interp.eval(setlocal);
+    }
+}
@@ -15,6 +15,7 @@
 
 import java.util.Vector;
 
+import org.hecl.AllocStats;
 import org.hecl.Interp;
 import org.hecl.Thing;
 import org.hecl.ListThing;
@@ -78,6 +79,11 @@ public class Hecl {
             }
 	    interp.setVar("argv", ListThing.create(argv));
 	    extend(interp);
+	    /* -Dhecl.jmx=true makes the allocation counts available
+	     * over JMX. */
+	    if (Boolean.getBoolean("hecl.jmx")) {
+		AllocStats.registerMBean();
+	    }
 	    if(args.length >= 1) {
 		HeclFileUtils.sourceFile(interp, args[0]);
 	    } else {
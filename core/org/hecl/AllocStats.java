@@ -0,0 +1,388 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+//#if j2se && javaversion >= 1.6
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+//#endif
+
+/**
+ * The <code>AllocStats</code> class counts allocations, so that
+ * memory use can be watched in ordinary builds.  While it's turned on
+ * (see <code>setEnabled</code>), it counts the Things created, by the
+ * type of their value, and, for each command and each script file,
+ * how many commands ran and how many bytes they allocated, not
+ * counting the commands they called.  Bytes are only known where the
+ * JVM can tell, as for the Profiler, and are 0 elsewhere.  When it's
+ * turned off, the only cost is checking a flag.
+ *
+ * The counts are shared by all interpreters.  They are kept in
+ * several stripes, each used by some of the threads, so that threads
+ * seldom wait for each other to count something.  On J2SE, they can
+ * also be read over JMX (see <code>registerMBean</code>).
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class AllocStats {
+    /* The types Things are counted by, as returned by thingclass. */
+    private static final String[] TYPES = {
+	"string", "int", "long", "double", "list", "hash", "code", "object",
+	"other"
+    };
+    private static final int OTHER = TYPES.length - 1;
+
+    /* Must be a power of 2. */
+    private static final int STRIPES = 8;
+
+    /* Checked by Thing and Stanza before calling anything here. */
+    static volatile boolean on = false;
+
+    private static final Stripe[] stripes = new Stripe[STRIPES];
+    static {
+	for (int i = 0; i < STRIPES; i++) {
+	    stripes[i] = new Stripe();
+	}
+    }
+
+    /* The counts kept by some of the threads. */
+    private static class Stripe {
+	long[] things = new long[TYPES.length];
+	/* Command name -> long[] {calls, bytes}. */
+	Hashtable commands = new Hashtable();
+	/* Script file -> long[] {commands, bytes}. */
+	Hashtable scripts = new Hashtable();
+    }
+
+    /* The commands running now in one interpreter. */
+    private int depth = 0;
+    private long[] startalloc = new long[32];
+    private long[] childalloc = new long[32];
+
+    /**
+     * The <code>setEnabled</code> method turns counting on or off.
+     * The counts are kept when it's turned off.
+     *
+     * @param enabled a <code>boolean</code> value
+     */
+    public static void setEnabled(boolean enabled) {
+	on = enabled;
+    }
+
+    public static boolean isEnabled() {
+	return on;
+    }
+
+    /**
+     * The <code>reset</code> method sets all the counts to 0.
+     *
+     */
+    public static void reset() {
+	for (int i = 0; i < STRIPES; i++) {
+	    Stripe s = stripes[i];
+	    synchronized (s) {
+		s.things = new long[TYPES.length];
+		s.commands = new Hashtable();
+		s.scripts = new Hashtable();
+	    }
+	}
+    }
+
+    private static Stripe stripe() {
+	return stripes[Thread.currentThread().hashCode() & (STRIPES - 1)];
+    }
+
+    /**
+     * The <code>thing</code> method is called when a Thing has been
+     * created with the value <code>rt</code>.
+     *
+     * @param rt a <code>RealThing</code> value
+     */
+    static void thing(RealThing rt) {
+	int type;
+	if (rt instanceof StringThing) {
+	    type = 0;
+	} else if (rt instanceof IntThing) {
+	    type = 1;
+	} else if (rt instanceof LongThing) {
+	    type = 2;
+	} else if (rt instanceof DoubleThing) {
+	    type = 3;
+	} else if (rt instanceof ListThing) {
+	    type = 4;
+	} else if (rt instanceof HashThing) {
+	    type = 5;
+	} else if (rt instanceof CodeThing) {
+	    type = 6;
+	} else if (rt instanceof ObjectThing) {
+	    type = 7;
+	} else {
+	    type = OTHER;
+	}
+	Stripe s = stripe();
+	synchronized (s) {
+	    s.things[type]++;
+	}
+    }
+
+    /**
+     * The <code>enter</code> method is called by Stanza.invoke just
+     * before a command is run.
+     *
+     */
+    void enter() {
+	if (depth == startalloc.length) {
+	    long[] newstart = new long[depth * 2];
+	    long[] newchild = new long[depth * 2];
+	    System.arraycopy(startalloc, 0, newstart, 0, depth);
+	    System.arraycopy(childalloc, 0, newchild, 0, depth);
+	    startalloc = newstart;
+	    childalloc = newchild;
+	}
+	childalloc[depth] = 0;
+	startalloc[depth] = Profiler.allocated();
+	depth++;
+    }
+
+    /**
+     * The <code>exit</code> method is called by Stanza.invoke when
+     * the command entered last has finished.
+     *
+     * @param cmd the <code>Thing</code> naming the command
+     * @param script the file the command is in
+     */
+    void exit(Thing cmd, Thing script) {
+	long end = Profiler.allocated();
+	if (depth == 0) {
+	    return;
+	}
+	depth--;
+	long incl = end - startalloc[depth];
+	if (depth > 0) {
+	    childalloc[depth - 1] += incl;
+	}
+	long bytes = incl - childalloc[depth];
+
+	String name = Profiler.name(cmd);
+	String file = script.toString();
+	Stripe s = stripe();
+	synchronized (s) {
+	    add(s.commands, name, bytes);
+	    add(s.scripts, file, bytes);
+	}
+    }
+
+    private static void add(Hashtable h, String key, long bytes) {
+	long[] c = (long[])h.get(key);
+	if (c == null) {
+	    c = new long[2];
+	    h.put(key, c);
+	}
+	c[0]++;
+	c[1] += bytes;
+    }
+
+    /**
+     * The <code>thingTypes</code> method returns the types of value
+     * that Things are counted by, in the order used by
+     * <code>thingCounts</code>.
+     *
+     * @return a <code>String[]</code> value
+     */
+    public static String[] thingTypes() {
+	String[] res = new String[TYPES.length];
+	System.arraycopy(TYPES, 0, res, 0, TYPES.length);
+	return res;
+    }
+
+    /**
+     * The <code>thingCounts</code> method returns the number of
+     * Things created with each type of value, in the order of
+     * <code>thingTypes</code>.
+     *
+     * @return a <code>long[]</code> value
+     */
+    public static long[] thingCounts() {
+	long[] total = new long[TYPES.length];
+	for (int i = 0; i < STRIPES; i++) {
+	    Stripe s = stripes[i];
+	    synchronized (s) {
+		for (int j = 0; j < TYPES.length; j++) {
+		    total[j] += s.things[j];
+		}
+	    }
+	}
+	return total;
+    }
+
+    /**
+     * The <code>commandCounts</code> method returns a Hashtable from
+     * command name to a long[] with the number of calls and the bytes
+     * allocated.
+     *
+     * @return a <code>Hashtable</code> value
+     */
+    public static Hashtable commandCounts() {
+	return merge(true);
+    }
+
+    /**
+     * The <code>scriptCounts</code> method returns a Hashtable from
+     * script file to a long[] with the number of commands run and the
+     * bytes allocated.  Code that isn't from a file is counted under
+     * "".
+     *
+     * @return a <code>Hashtable</code> value
+     */
+    public static Hashtable scriptCounts() {
+	return merge(false);
+    }
+
+    private static Hashtable merge(boolean commands) {
+	Hashtable res = new Hashtable();
+	for (int i = 0; i < STRIPES; i++) {
+	    Stripe s = stripes[i];
+	    synchronized (s) {
+		Hashtable h = commands ? s.commands : s.scripts;
+		for (Enumeration en = h.keys(); en.hasMoreElements();) {
+		    String key = (String)en.nextElement();
+		    long[] c = (long[])h.get(key);
+		    long[] r = (long[])res.get(key);
+		    if (r == null) {
+			r = new long[2];
+			res.put(key, r);
+		    }
+		    r[0] += c[0];
+		    r[1] += c[1];
+		}
+	    }
+	}
+	return res;
+    }
+
+    /**
+     * The <code>stats</code> method returns the counts as a Hashtable
+     * of Things, with the keys: things, a hash from value type to
+     * count; commands, a hash from command name to a hash with the
+     * keys calls and bytes; and scripts, a hash from file name to a
+     * hash with the keys commands and bytes.
+     *
+     * @return a <code>Hashtable</code> value
+     */
+    public static Hashtable stats() {
+	long[] counts = thingCounts();
+	Hashtable things = new Hashtable();
+	for (int j = 0; j < TYPES.length; j++) {
+	    things.put(TYPES[j], LongThing.create(counts[j]));
+	}
+	Hashtable res = new Hashtable();
+	res.put("things", new Thing(new HashThing(things)));
+	res.put("commands", toThing(commandCounts(), "calls"));
+	res.put("scripts", toThing(scriptCounts(), "commands"));
+	return res;
+    }
+
+    private static Thing toThing(Hashtable counts, String countname) {
+	Hashtable res = new Hashtable();
+	for (Enumeration en = counts.keys(); en.hasMoreElements();) {
+	    String key = (String)en.nextElement();
+	    long[] c = (long[])counts.get(key);
+	    Hashtable h = new Hashtable();
+	    h.put(countname, LongThing.create(c[0]));
+	    h.put("bytes", LongThing.create(c[1]));
+	    res.put(key, new Thing(new HashThing(h)));
+	}
+	return new Thing(new HashThing(res));
+    }
+
+//#if j2se && javaversion >= 1.6
+    /**
+     * The name the counts are registered under in JMX.
+     */
+    public static final String MBEANNAME = "org.hecl:type=AllocStats";
+
+    /**
+     * The <code>registerMBean</code> method makes the counts
+     * available over JMX, as an AllocStatsMXBean, if they aren't
+     * already.  This isn't done unless asked for, because starting
+     * JMX takes a while.
+     *
+     * @exception HeclException if an error occurs
+     */
+    public static synchronized void registerMBean() throws HeclException {
+	try {
+	    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	    ObjectName name = new ObjectName(MBEANNAME);
+	    if (!server.isRegistered(name)) {
+		server.registerMBean(new Bean(), name);
+	    }
+	} catch (Exception e) {
+	    throw new HeclException("Can't register " + MBEANNAME + ": " + e);
+	}
+    }
+
+    private static class Bean implements AllocStatsMXBean {
+	public boolean isEnabled() {
+	    return AllocStats.isEnabled();
+	}
+
+	public void setEnabled(boolean enabled) {
+	    AllocStats.setEnabled(enabled);
+	}
+
+	public void reset() {
+	    AllocStats.reset();
+	}
+
+	public Map<String, Long> getThingCounts() {
+	    Map<String, Long> res = new HashMap<String, Long>();
+	    long[] counts = thingCounts();
+	    for (int j = 0; j < TYPES.length; j++) {
+		res.put(TYPES[j], Long.valueOf(counts[j]));
+	    }
+	    return res;
+	}
+
+	public Map<String, Long> getCommandCalls() {
+	    return column(commandCounts(), 0);
+	}
+
+	public Map<String, Long> getCommandBytes() {
+	    return column(commandCounts(), 1);
+	}
+
+	public Map<String, Long> getScriptBytes() {
+	    return column(scriptCounts(), 1);
+	}
+
+	private static Map<String, Long> column(Hashtable counts, int i) {
+	    Map<String, Long> res = new HashMap<String, Long>();
+	    for (Enumeration en = counts.keys(); en.hasMoreElements();) {
+		String key = (String)en.nextElement();
+		res.put(key, Long.valueOf(((long[])counts.get(key))[i]));
+	    }
+	    return res;
+	}
+    }
+//#endif
+}
@@ -0,0 +1,50 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+//#if j2se && javaversion >= 1.6
+
+package org.hecl;
+
+import java.util.Map;
+
+/**
+ * <code>AllocStatsMXBean</code> is the JMX view of AllocStats.  See
+ * AllocStats.registerMBean.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public interface AllocStatsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+
+    /* Things created, by the type of their value. */
+    Map<String, Long> getThingCounts();
+
+    /* Calls to each command. */
+    Map<String, Long> getCommandCalls();
+
+    /* Bytes allocated by each command, not counting the commands it
+     * called. */
+    Map<String, Long> getCommandBytes();
+
+    /* Bytes allocated by the commands in each script file. */
+    Map<String, Long> getScriptBytes();
+}
+
+//#endif
@@ -0,0 +1,181 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+//#if javaversion >= 1.5
+
+package org.hecl;
+
+import java.math.BigInteger;
+
+/**
+ * The <code>BigThing</code> class represents whole numbers that don't
+ * fit in a long.  Integer math that overflows a long carries on with
+ * these, so that it stays exact.  Results that fit in a long again
+ * become LongThings.  There is no BigInteger in J2ME, so this is only
+ * available in J2SE.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class BigThing extends IntegralThing {
+    private static final BigInteger LONGMIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONGMAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /* The internal value. */
+    private BigInteger val;
+
+    /**
+     * Creates a new <code>BigThing</code> instance with value b.
+     *
+     * @param b a <code>BigInteger</code> value
+     */
+    public BigThing(BigInteger b) {
+	super(BIG);
+	val = b;
+    }
+
+    public String thingclass() {
+	return "bigint";
+    }
+
+    /**
+     * The <code>create</code> method returns a Thing with the value
+     * b - a BigThing, or a LongThing if it fits in a long.
+     *
+     * @param b a <code>BigInteger</code> value
+     * @return a <code>Thing</code> value
+     */
+    public static Thing create(BigInteger b) {
+	if (b.compareTo(LONGMIN) >= 0 && b.compareTo(LONGMAX) <= 0) {
+	    return LongThing.create(b.longValue());
+	}
+	return new Thing(new BigThing(b));
+    }
+
+    /**
+     * The <code>toBig</code> method returns the value of a whole
+     * number as a BigInteger.
+     *
+     * @param n a <code>NumberThing</code> value
+     * @return a <code>BigInteger</code> value
+     */
+    public static BigInteger toBig(NumberThing n) {
+	if (n instanceof BigThing) {
+	    return ((BigThing)n).val;
+	}
+	return BigInteger.valueOf(n.longValue());
+    }
+
+    /**
+     * <code>parse</code> returns a BigThing if s is a whole number,
+     * written the way Long.parseLong would accept it, or null if it
+     * isn't.
+     *
+     * @param s a <code>String</code> value
+     * @return a <code>BigThing</code> value
+     */
+    static BigThing parse(String s) {
+	int len = s.length();
+	int i = len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+	if (i == len) {
+	    return null;
+	}
+	for (; i < len; i++) {
+	    if (Character.digit(s.charAt(i), 10) < 0) {
+		return null;
+	    }
+	}
+	return new BigThing(new BigInteger(s));
+    }
+
+    /**
+     * The <code>binary</code> method does the integer math for
+     * MathCmds.binary, when a long isn't big enough.
+     *
+     * @param cmdcode a <code>MathCmds</code> operator
+     * @param a a <code>BigInteger</code> value
+     * @param b a <code>BigInteger</code> value
+     * @return a <code>Thing</code> value
+     * @exception HeclException if an error occurs
+     */
+    static Thing binary(int cmdcode, BigInteger a, BigInteger b)
+	throws HeclException {
+	switch (cmdcode) {
+	  case MathCmds.BINADD:
+	    return create(a.add(b));
+	  case MathCmds.BINSUB:
+	    return create(a.subtract(b));
+	  case MathCmds.BINMUL:
+	    return create(a.multiply(b));
+	  case MathCmds.BINDIV:
+	    return create(a.divide(b));
+	  case MathCmds.MOD:
+	    return create(a.remainder(b));
+	  case MathCmds.MIN:
+	    return create(a.min(b));
+	  case MathCmds.MAX:
+	    return create(a.max(b));
+	  case MathCmds.AND:
+	    return create(a.and(b));
+	  case MathCmds.OR:
+	    return create(a.or(b));
+	}
+	throw new HeclException("Unknown binary mathcmdcode '"+cmdcode+"'.");
+    }
+
+    public byte byteValue() {
+	return val.byteValue();
+    }
+
+    public short shortValue() {
+	return val.shortValue();
+    }
+
+    public int intValue() {
+	return val.intValue();
+    }
+
+    public long longValue() {
+	return val.longValue();
+    }
+
+    public float floatValue() {
+	return val.floatValue();
+    }
+
+    public double doubleValue() {
+	return val.doubleValue();
+    }
+
+    /**
+     * <code>deepcopy</code> makes a copy.  BigIntegers can't be
+     * changed, so the value itself is shared.
+     *
+     * @return a <code>RealThing</code> value
+     */
+    public RealThing deepcopy() {
+	return new BigThing(val);
+    }
+
+    /**
+     * <code>getStringRep</code> creates a string representation of the
+     * BigThing.
+     *
+     * @return a <code>String</code> value
+     */
+    public String getStringRep() {
+	return val.toString();
+    }
+}
+//#endif
@@ -0,0 +1,216 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * The <code>CodeSerializer</code> class writes a parsed
+ * <code>CodeThing</code> - its Stanzas, their words and line numbers
+ * - to a stream, and reads it back, so that a script can be loaded
+ * without parsing it again.  Only code that has just come out of
+ * <code>Parse</code> should be written, as that only contains the
+ * kinds of Things the parser makes.  Anything else is written as its
+ * string representation.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class CodeSerializer {
+    /* "HECL" */
+    private static final int MAGIC = 0x4845434c;
+
+    /* Change this whenever the format changes. */
+    public static final int VERSION = 1;
+
+    private static final byte STRING = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte SUBST = 4;
+    private static final byte CODE = 5;
+    private static final byte GROUP = 6;
+
+    private static final byte LITERAL = 0x10;
+    private static final byte TYPEMASK = 0x0f;
+
+    /**
+     * The <code>write</code> method writes <code>code</code> to
+     * <code>out</code>.
+     *
+     * @param code a <code>CodeThing</code> value
+     * @param out a <code>DataOutputStream</code> value
+     * @exception IOException if an error occurs
+     */
+    public static void write(CodeThing code, DataOutputStream out)
+	throws IOException {
+	out.writeInt(MAGIC);
+	out.writeInt(VERSION);
+	writeCode(code, out);
+	out.flush();
+    }
+
+    /**
+     * The <code>read</code> method reads back code written by
+     * <code>write</code>.  An IOException is thrown if the data is
+     * not valid.
+     *
+     * @param in a <code>DataInputStream</code> value
+     * @return a <code>CodeThing</code> value
+     * @exception IOException if an error occurs
+     */
+    public static CodeThing read(DataInputStream in) throws IOException {
+	if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+	    throw new IOException("Not a compiled Hecl script");
+	}
+	return readCode(in);
+    }
+
+    private static void writeCode(CodeThing code, DataOutputStream out)
+	throws IOException {
+	Vector stanzas = code.getStanzas();
+	int n = stanzas.size();
+	out.writeBoolean(code.marksubst);
+	out.writeInt(n);
+	for (int i = 0; i < n; i++) {
+	    Stanza s = (Stanza)stanzas.elementAt(i);
+	    Thing[] argv = s.getArgv();
+	    out.writeInt(s.getLineno());
+	    out.writeInt(argv.length);
+	    for (int j = 0; j < argv.length; j++) {
+		writeThing(argv[j], out);
+	    }
+	}
+    }
+
+    private static CodeThing readCode(DataInputStream in) throws IOException {
+	boolean marksubst = in.readBoolean();
+	int n = readCount(in);
+	Vector stanzas = new Vector(n);
+	for (int i = 0; i < n; i++) {
+	    int lineno = in.readInt();
+	    Thing[] argv = new Thing[readCount(in)];
+	    for (int j = 0; j < argv.length; j++) {
+		argv[j] = readThing(in);
+	    }
+	    stanzas.addElement(new Stanza(null, argv, lineno));
+	}
+	CodeThing code = new CodeThing(stanzas);
+	code.marksubst = marksubst;
+	return code;
+    }
+
+    private static void writeThing(Thing t, DataOutputStream out)
+	throws IOException {
+	byte flags = t.isLiteral() ? LITERAL : 0;
+	RealThing rt = t.getVal();
+	if (rt instanceof IntThing) {
+	    out.writeByte(INT | flags);
+	    out.writeInt(((IntThing)rt).intValue());
+	} else if (rt instanceof LongThing) {
+	    out.writeByte(LONG | flags);
+	    out.writeLong(((LongThing)rt).longValue());
+//#if javaversion >= 1.5 || cldc > 1.0
+	} else if (rt instanceof DoubleThing) {
+	    out.writeByte(DOUBLE | flags);
+	    out.writeDouble(((DoubleThing)rt).doubleValue());
+//#endif
+	} else if (rt instanceof SubstThing) {
+	    out.writeByte(SUBST | flags);
+	    writeString(((SubstThing)rt).getVarName(), out);
+	} else if (rt instanceof CodeThing) {
+	    out.writeByte(CODE | flags);
+	    writeCode((CodeThing)rt, out);
+	} else if (rt instanceof GroupThing) {
+	    Vector v = ((GroupThing)rt).val;
+	    out.writeByte(GROUP | flags);
+	    out.writeInt(v.size());
+	    for (int i = 0; i < v.size(); i++) {
+		writeThing((Thing)v.elementAt(i), out);
+	    }
+	} else {
+	    out.writeByte(STRING | flags);
+	    writeString(rt.getStringRep(), out);
+	}
+    }
+
+    private static Thing readThing(DataInputStream in) throws IOException {
+	byte tag = in.readByte();
+	RealThing rt;
+	switch (tag & TYPEMASK) {
+	  case STRING:
+	    rt = new StringThing(readString(in));
+	    break;
+	  case INT:
+	    rt = new IntThing(in.readInt());
+	    break;
+	  case LONG:
+	    rt = new LongThing(in.readLong());
+	    break;
+//#if javaversion >= 1.5 || cldc > 1.0
+	  case DOUBLE:
+	    rt = new DoubleThing(in.readDouble());
+	    break;
+//#endif
+	  case SUBST:
+	    rt = new SubstThing(readString(in));
+	    break;
+	  case CODE:
+	    rt = readCode(in);
+	    break;
+	  case GROUP:
+	    int n = readCount(in);
+	    Vector v = new Vector(n);
+	    for (int i = 0; i < n; i++) {
+		v.addElement(readThing(in));
+	    }
+	    rt = new GroupThing(v);
+	    break;
+	  default:
+	    throw new IOException("Bad type in compiled Hecl script: " + tag);
+	}
+	Thing t = new Thing(rt);
+	if ((tag & LITERAL) != 0) {
+	    t.setLiteral();
+	}
+	return t;
+    }
+
+    /* writeUTF is limited to 64K, which a proc body can easily be. */
+    private static void writeString(String s, DataOutputStream out)
+	throws IOException {
+	byte[] b = s.getBytes("UTF-8");
+	out.writeInt(b.length);
+	out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+	byte[] b = new byte[readCount(in)];
+	in.readFully(b);
+	return new String(b, "UTF-8");
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+	int n = in.readInt();
+	if (n < 0) {
+	    throw new IOException("Bad count in compiled Hecl script: " + n);
+	}
+	return n;
+    }
+}
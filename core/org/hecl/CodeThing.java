@@ -33,6 +33,15 @@ public class CodeThing implements RealThing {
     /* Mark this for substitution or not. */
     public boolean marksubst = false;
 
+    /* Code that is run this many times gets compiled. */
+    static final int COMPILETHRESHOLD = 2;
+
+    /* How many times the code has run before being compiled. */
+    private int runs = 0;
+
+    /* The compiled form of the stanzas, or null. */
+    private CompiledCode compiled = null;
+
     CodeThing() {
         stanzas = new Vector();
     }
@@ -47,28 +56,24 @@ public class CodeThing implements RealThing {
 
     /**
      * The <code>setCodeFromAny</code> method makes the Thing passed to it
-     * into a CodeThing representation.
+     * into a CodeThing representation, and returns it.
      * 
      * @param interp an <code>Interp</code> value
      * @param thing a <code>Thing</code> value
+     * @return a <code>CodeThing</code> value
      * @exception HeclException if an error occurs
      */
-    private static void setCodeFromAny(Interp interp, Thing thing)
+    private static CodeThing setCodeFromAny(Interp interp, Thing thing)
             throws HeclException {
         RealThing realthing = thing.getVal();
 	CodeThing newthing;
         /* FIXME - SubstThing? */
 
         if (realthing instanceof CodeThing) {
-	    return;
+	    return (CodeThing)realthing;
 	} else if (realthing instanceof ListThing) {
 	    newthing = new CodeThing();
-	    Vector v = ListThing.get(thing);
-	    int sz = v.size();
-	    Thing []argv = new Thing[sz];
-	    for (int i = 0; i < sz; i++) {
-		argv[i] = (Thing)v.elementAt(i);
-	    }
+	    Thing []argv = ListThing.getArray(thing);
 	    /* FIXME - addstanza lineno */
 	    newthing.addStanza(interp, argv, -1);
 	} else {
@@ -76,6 +81,7 @@ public class CodeThing implements RealThing {
             newthing = hp.parseToCode();
         }
 	thing.setVal(newthing);
+	return newthing;
     }
 
     /**
@@ -90,8 +96,7 @@ public class CodeThing implements RealThing {
      */
     public static CodeThing get(Interp interp, Thing thing)
             throws HeclException {
-        setCodeFromAny(interp, thing);
-        return (CodeThing)thing.getVal();
+        return setCodeFromAny(interp, thing);
     }
 
 
@@ -109,7 +114,9 @@ public class CodeThing implements RealThing {
             Stanza s = (Stanza)e.nextElement();
             deststanzas.addElement(s.deepcopy());
         }
-        return new CodeThing(deststanzas);
+	CodeThing res = new CodeThing(deststanzas);
+	res.marksubst = marksubst;
+        return res;
     }
 
     /**
@@ -159,29 +166,37 @@ public class CodeThing implements RealThing {
      */
     protected static Thing doGroupSubst(Interp interp, Thing thing)
             throws HeclException {
-        RealThing realthing = thing.getVal();
-        StringBuffer result = new StringBuffer("");
-        Vector v = GroupThing.get(thing);
+        StringBuffer result = new StringBuffer();
+	appendGroup(interp, thing, result);
+	/* The StringThing takes the buffer over, and only turns it into
+	 * a String if it's needed. */
+        return new Thing(result);
+    }
 
+    /* Substitutes a group into result.  Nested groups go straight
+     * into the same buffer. */
+    private static void appendGroup(Interp interp, Thing thing,
+				    StringBuffer result)
+            throws HeclException {
+        RealThing realthing;
+        Vector v = GroupThing.get(thing);
+	int n = v.size();
 	Thing t = null;
 
-	for (Enumeration e = v.elements(); e.hasMoreElements();) {
-	    t = (Thing) e.nextElement();
+	for (int i = 0; i < n; i++) {
+	    t = (Thing) v.elementAt(i);
 
 	    realthing = t.getVal();
 	    if (realthing instanceof GroupThing) {
-		result.append(doGroupSubst(interp, t).toString());
+		appendGroup(interp, t, result);
 	    } else if (realthing instanceof SubstThing) {
 		result.append(doSubstSubst(interp, t).toString());
-		/* System.out.println("result is " + result);  */
 	    } else if (realthing instanceof CodeThing) {
 		result.append(doCodeSubst(interp, t).toString());
 	    } else {
 		result.append(t.toString());
 	    }
 	}
-
-        return new Thing(result.toString());
     }
 
     /**
@@ -192,22 +207,39 @@ public class CodeThing implements RealThing {
      */
     public void addStanza(Interp interp, Thing []argv, int lineno) {
 	stanzas.addElement(new Stanza(null, argv, lineno));
+	compiled = null;
+    }
+
+    Vector getStanzas() {
+	return stanzas;
     }
 
     /**
-     * The <code>run</code> method runs the CodeThing.
+     * The <code>run</code> method runs the CodeThing.  The first time
+     * through, the stanzas are walked one by one.  Code that gets run
+     * again, such as loop bodies and procs, is compiled into a
+     * <code>CompiledCode</code>, which is used from then on.
      * 
      * @param interp <code>Interp</code> value
      * @exception HeclException if an error occurs
      */
-    public synchronized Thing run(Interp interp) throws HeclException {
+    public Thing run(Interp interp) throws HeclException {
  	//++level;
 	//System.err.println("starting CodeThing run" + level);
         //System.out.println("RUNNING: " + this.getStringRep() +"</RUNNING>");
 	Thing res = null;
-	for (Enumeration e = stanzas.elements(); e.hasMoreElements();) {
-	    Stanza s = (Stanza) e.nextElement();
-	    res = s.run(interp);
+	CompiledCode cc = compiled;
+	if (cc == null && ++runs >= COMPILETHRESHOLD) {
+	    cc = CompiledCode.compile(stanzas);
+	    compiled = cc;
+	}
+	if (cc != null) {
+	    res = cc.run(interp);
+	} else {
+	    for (Enumeration e = stanzas.elements(); e.hasMoreElements();) {
+		Stanza s = (Stanza) e.nextElement();
+		res = s.run(interp);
+	    }
 	}
 	if(res == null)
 	    res = Thing.emptyThing();
@@ -31,6 +31,13 @@ public abstract interface Command {
      * The <code>cmdCode</code> method takes an interpreter and an array of
      * Things, performs some calculations, and returns a <code>Thing</code>
      * representing the computed value, or <code>null</code>.
+     *
+     * For Operators and procs, <code>argv</code> is given back to the
+     * interpreter and reused for another command as soon as
+     * <code>cmdCode</code> returns, so they must not keep it, or hand
+     * it to anything that outlives the call - copy what is needed
+     * instead.  The Things in it may be kept.  Other commands get an
+     * array of their own.
      * 
      * @param interp
      *            an <code>Interp</code> value
@@ -0,0 +1,196 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Vector;
+
+/**
+ * The <code>CompiledCode</code> class is the "bytecode" form of a
+ * <code>CodeThing</code>.  Each Stanza is lowered into one
+ * instruction per word, which pushes the substituted word onto an
+ * operand stack, followed by an instruction that invokes the
+ * command.  The type of each word is looked at once, when compiling,
+ * instead of every time the code is run.  Once compiled, it isn't
+ * modified, so several threads can run it at once.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+class CompiledCode {
+    /* Push a literal word. */
+    static final byte PUSH = 0;
+
+    /* Push the value of a $variable. */
+    static final byte LOADVAR = 1;
+
+    /* Substitute a "group $of [words]" and push the result. */
+    static final byte GROUP = 2;
+
+    /* Run a [command] and push its result. */
+    static final byte SUBST = 3;
+
+    /* Pop the words of a stanza and invoke its command. */
+    static final byte INVOKE = 4;
+
+    /* Flag for the first word of a stanza.  The command is looked
+     * up as soon as it's pushed, before the other words are
+     * substituted.  Errors while substituting it are not tagged with
+     * the line number, just like in Stanza.run. */
+    static final byte CMDWORD = 0x10;
+
+    private static final byte OPMASK = 0x0f;
+
+    /* The instructions. */
+    private final byte[] ops;
+
+    /* The word each instruction operates on, if any. */
+    private final Thing[] words;
+
+    /* The stanza each instruction belongs to. */
+    private final Stanza[] stanzas;
+
+    /* Depth of the operand stack. */
+    private final int maxstack;
+
+    private CompiledCode(byte[] ops, Thing[] words, Stanza[] stanzas,
+			 int maxstack) {
+	this.ops = ops;
+	this.words = words;
+	this.stanzas = stanzas;
+	this.maxstack = maxstack;
+    }
+
+    /**
+     * The <code>compile</code> method lowers a Vector of Stanzas into
+     * instructions.
+     *
+     * @param v a <code>Vector</code> of <code>Stanza</code>s
+     * @return a <code>CompiledCode</code> value
+     */
+    static CompiledCode compile(Vector v) {
+	int nstanzas = v.size();
+	int size = 0;
+	for (int i = 0; i < nstanzas; i++) {
+	    size += ((Stanza)v.elementAt(i)).getArgv().length + 1;
+	}
+
+	byte[] ops = new byte[size];
+	Thing[] words = new Thing[size];
+	Stanza[] stanzas = new Stanza[size];
+	int maxstack = 0;
+	int pc = 0;
+	for (int i = 0; i < nstanzas; i++) {
+	    Stanza s = (Stanza)v.elementAt(i);
+	    Thing[] argv = s.getArgv();
+	    if (argv.length > maxstack) {
+		maxstack = argv.length;
+	    }
+	    for (int j = 0; j < argv.length; j++) {
+		RealThing rt = argv[j].getVal();
+		byte op;
+		if (rt instanceof GroupThing) {
+		    op = GROUP;
+		} else if (rt instanceof SubstThing) {
+		    op = LOADVAR;
+		} else if (rt instanceof CodeThing && ((CodeThing)rt).marksubst) {
+		    op = SUBST;
+		} else {
+		    op = PUSH;
+		}
+		if (j == 0) {
+		    op |= CMDWORD;
+		}
+		ops[pc] = op;
+		words[pc] = argv[j];
+		stanzas[pc] = s;
+		pc++;
+	    }
+	    ops[pc] = INVOKE;
+	    stanzas[pc] = s;
+	    pc++;
+	}
+	return new CompiledCode(ops, words, stanzas, maxstack);
+    }
+
+    /**
+     * The <code>run</code> method executes the instructions, returning
+     * the result of the last command, or <code>null</code> if there
+     * were no commands or it didn't return anything.
+     *
+     * @param interp an <code>Interp</code> value
+     * @return a <code>Thing</code> value
+     * @exception HeclException if an error occurs
+     */
+    Thing run(Interp interp) throws HeclException {
+	Thing[] stack = interp.takeArgv(maxstack);
+	int sp = 0;
+	int pc = 0;
+	int n = ops.length;
+	Thing res = null;
+	Thing t;
+	/* The command of the stanza being run, looked up as soon as
+	 * its first word is pushed. */
+	Object cmd = null;
+
+	try {
+	    for (pc = 0; pc < n; pc++) {
+		switch (ops[pc] & OPMASK) {
+		  case PUSH:
+		    stack[sp++] = words[pc];
+		    break;
+
+		  case LOADVAR:
+		    stack[sp++] = SubstThing.get(interp, words[pc]);
+		    break;
+
+		  case GROUP:
+		    t = CodeThing.doGroupSubst(interp, words[pc]);
+		    t.copy = true;
+		    stack[sp++] = t;
+		    break;
+
+		  case SUBST:
+		    stack[sp++] = interp.eval(words[pc]);
+		    break;
+
+		  case INVOKE:
+		    Stanza s = stanzas[pc];
+		    int argc = s.getArgv().length;
+		    Thing[] newargv = interp.takeArgv(argc);
+		    sp -= argc;
+		    System.arraycopy(stack, sp, newargv, 0, argc);
+		    res = s.invoke(interp, newargv, cmd);
+		    cmd = null;
+		    break;
+		}
+		if ((ops[pc] & CMDWORD) != 0) {
+		    cmd = stanzas[pc].lookup(interp, stack[sp - 1]);
+		}
+	    }
+	} catch (HeclException he) {
+	    /* Errors from the command itself have already been dealt
+	     * with by Stanza.invoke. */
+	    byte op = ops[pc];
+	    if (op != INVOKE && (op & CMDWORD) == 0) {
+		he.setLine(stanzas[pc].getLineno());
+	    }
+	    throw he;
+	} finally {
+	    interp.giveArgv(stack);
+	}
+	return res;
+    }
+}
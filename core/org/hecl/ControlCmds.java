@@ -15,9 +15,7 @@ limitations under the License.
 
 package org.hecl;
 
-import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.Vector;
 
 /**
  * <code>ControlCmds</code> implements 'control' constructs like if,
@@ -98,11 +96,19 @@ class ControlCmds extends Operator {
 
 	  case FOREACH:
 	    /* The 'foreach' command. */
-	    Vector list = ListThing.get(argv[2]);
-	    if (list.size() == 0) {
+	    /* A hash is walked as it is, rather than being turned into
+	     * a list. */
+	    ListThing list = argv[2].getVal() instanceof HashThing ?
+		((HashThing)argv[2].getVal()).pairs() : ListThing.getList(argv[2]);
+	    int sz = list.size();
+	    if (sz == 0) {
 		break;
 	    }
-	    Vector varlist = ListThing.get(argv[1]);
+	    /* Hang on to the elements as they are now, even if the body
+	     * changes the list. */
+	    list = list.range(0, sz - 1);
+	    ListThing varlist = ListThing.getList(argv[1]);
+	    int nvars = varlist.size();
 	    int i = 0;
 	    boolean cont = true;
 
@@ -113,22 +119,22 @@ class ControlCmds extends Operator {
 		 * This is for foreach loops where we have more than one variable to
 		 * set: foreach {m n} $somelist { code ... }
 		 */
-		for (Enumeration e = varlist.elements(); e.hasMoreElements();) {
+		for (int j = 0; j < nvars; j++) {
 		    if (cont == false) {
 			throw new HeclException(
 			    "Foreach argument list does not match list length");
 		    }
 
-		    Thing element = (Thing) list.elementAt(i);
+		    Thing element = list.elementAt(i);
 		    element.copy = true; /* Make sure that we don't fiddle
 					  * with the original value. */
-		    String varname = ((Thing) e.nextElement()).toString();
+		    String varname = varlist.elementAt(j).toString();
 
 		    // System.out.println("set " +varname+ " to " +element+ " copy: " + element.copy);
 
 		    interp.setVar(varname, element);
 		    i++;
-		    if (i == list.size()) {
+		    if (i == sz) {
 			cont = false;
 		    }
 		}
@@ -164,11 +170,11 @@ class ControlCmds extends Operator {
 
 	  case BREAK:
 	    /* The 'break' command. */
-	    throw new HeclException("", HeclException.BREAK);
+	    throw interp.breaksignal.signal(null);
 
 	  case CONTINUE:
 	    /* The 'continue' command. */
-	    throw new HeclException("", HeclException.CONTINUE);
+	    throw interp.continuesignal.signal(null);
 	  default:
 	    throw new HeclException("Unknown list command '"
 				    + argv[0].toString() + "' with code '"
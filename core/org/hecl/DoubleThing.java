@@ -28,13 +28,19 @@ class DoubleThing extends FractionalThing {
 	return "double";
     }
 
+//#if cldc == 1.0
+    protected DoubleThing() {
+	super(DOUBLE);
+    }
+//#endif
+
     /**
      * Creates a new <code>DoubleThing</code> instance equal to 0.
      *
      */
 //#if javaversion >= 1.5 || cldc > 1.0
     public DoubleThing() {
-	set(0.0);
+	this(0.0);
     }
 
     /**
@@ -44,6 +50,7 @@ class DoubleThing extends FractionalThing {
      *            a <code>double</code> value
      */
     public DoubleThing(double d) {
+	super(DOUBLE);
 	set(d);
     }
 
@@ -55,7 +62,7 @@ class DoubleThing extends FractionalThing {
      *            a <code>boolean</code> value
      */
     public DoubleThing(boolean b) {
-        set(b == true ? 1.0 : 0.0);
+        this(b == true ? 1.0 : 0.0);
     }
 
     /**
@@ -66,7 +73,7 @@ class DoubleThing extends FractionalThing {
      * floating point number syntax.
      */
     public DoubleThing(String s) throws NumberFormatException {
-        set(Double.parseDouble(s));
+        this(Double.parseDouble(s));
     }
 
     /**
@@ -0,0 +1,116 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Hashtable;
+
+/**
+ * The <code>EventStats</code> class keeps statistics on the tasks run
+ * by an interpreter's event loop, for each of its three queues:
+ * async, timer and idle.  For each queue there is the largest number
+ * of tasks that have been waiting at once, and histograms of the time
+ * tasks waited between being queued and starting, and of the time
+ * they took to run.  For timers, there's also how late they started
+ * compared to when they were due.  Times are in milliseconds.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+class EventStats {
+    static final int ASYNC = 0;
+    static final int TIMER = 1;
+    static final int IDLE = 2;
+
+    private static final String[] NAMES = {
+	Interp.ASYNCPREFIX, Interp.TIMERPREFIX, Interp.IDLEPREFIX
+    };
+
+    private int[] maxdepth = new int[3];
+    private Histogram[] wait = new Histogram[3];
+    private Histogram[] run = new Histogram[3];
+    private Histogram late = new Histogram();
+
+    EventStats() {
+	for (int i = 0; i < 3; i++) {
+	    wait[i] = new Histogram();
+	    run[i] = new Histogram();
+	}
+    }
+
+    /**
+     * The <code>queued</code> method is called when a task has been
+     * added to a queue, which now has <code>depth</code> tasks.
+     *
+     * @param queue an <code>int</code> value
+     * @param depth an <code>int</code> value
+     */
+    synchronized void queued(int queue, int depth) {
+	if (depth > maxdepth[queue]) {
+	    maxdepth[queue] = depth;
+	}
+    }
+
+    /**
+     * The <code>ran</code> method is called when a task has been
+     * run, from <code>start</code> to <code>end</code>.
+     *
+     * @param queue an <code>int</code> value
+     * @param t a <code>HeclTask</code> value
+     * @param start a <code>long</code> value
+     * @param end a <code>long</code> value
+     */
+    synchronized void ran(int queue, HeclTask t, long start, long end) {
+	wait[queue].add(start - t.queued);
+	run[queue].add(end - start);
+	if (queue == TIMER) {
+	    late.add(start - t.getGeneration());
+	}
+    }
+
+    synchronized void reset() {
+	for (int i = 0; i < 3; i++) {
+	    maxdepth[i] = 0;
+	    wait[i].reset();
+	    run[i].reset();
+	}
+	late.reset();
+    }
+
+    /**
+     * The <code>snapshot</code> method returns the statistics as a
+     * Hashtable from queue name to a hash with the keys depth,
+     * maxdepth, wait and run, and, for timers, late.  The last three
+     * are hashes as described in <code>Histogram.toThing</code>.
+     *
+     * @param depths the current number of tasks in each queue
+     * @return a <code>Hashtable</code> value
+     */
+    synchronized Hashtable snapshot(int[] depths) {
+	Hashtable res = new Hashtable();
+	for (int i = 0; i < 3; i++) {
+	    Hashtable h = new Hashtable();
+	    h.put("depth", IntThing.create(depths[i]));
+	    h.put("maxdepth", IntThing.create(maxdepth[i]));
+	    h.put("wait", wait[i].toThing());
+	    h.put("run", run[i].toThing());
+	    if (i == TIMER) {
+		h.put("late", late.toThing());
+	    }
+	    res.put(NAMES[i], new Thing(new HashThing(h)));
+	}
+	return res;
+    }
+}
@@ -22,6 +22,10 @@ package org.hecl;
  * @version 1.0
  */
 public abstract class FractionalThing extends NumberThing {
+    protected FractionalThing(int numtype) {
+	super(numtype);
+    }
+
     public boolean isIntegral() {
 	return false;
     }
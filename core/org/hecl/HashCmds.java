@@ -15,9 +15,7 @@ limitations under the License.
 
 package org.hecl;
 
-import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.Vector;
 
 /**
  * The <code>HashCmds</code> class takes care of loading and
@@ -38,16 +36,22 @@ class HashCmds extends Operator {
 
 
     public Thing operate(int cmd, Interp interp, Thing[] argv) throws HeclException {
-	Hashtable hash = cmd != 0 ? HashThing.get(argv[1]) : null;
+	HashThing hash = cmd != 0 ? HashThing.getHash(argv[1]) : null;
 	Thing result = null;
 
+	/* A literal from the parser is left alone, so changes are made
+	 * to a copy of it instead. */
+	if (hash != null && argv[1].isLiteral()) {
+	    hash = hash.copy();
+	}
+
 	switch (cmd) {
 	    case HASH:
-		result = HashThing.create(HashThing.get(argv[1]));
+		result = new Thing(HashThing.getHash(argv[1]).copy());
 		break;
 
 	    case HGET:
-		result = (Thing)hash.get(argv[2].toString());
+		result = hash.get(argv[2].toString());
 		break;
 
 	    case HSET:
@@ -56,12 +60,12 @@ class HashCmds extends Operator {
 		break;
 
 	    case HKEYS:
-		Vector v = new Vector(hash.size());
-		Enumeration e = hash.keys();
-		while(e.hasMoreElements()) {
-		    v.addElement(new Thing((String)e.nextElement()));
+		String[] keys = hash.keys();
+		Thing[] a = new Thing[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+		    a[i] = new Thing(keys[i]);
 		}
-		return ListThing.create(v);
+		return new Thing(new ListThing(a, a.length));
 
 	    case HCLEAR:
 		hash.clear();
@@ -69,13 +73,12 @@ class HashCmds extends Operator {
 		break;
 
 	    case HREMOVE:
-		Object o = hash.remove(argv[2].toString());
-		result = o != null ? (Thing)o : new Thing("");
+		Thing o = hash.remove(argv[2].toString());
+		result = o != null ? o : new Thing("");
 		break;
 
 	    case HCONTAINS:
-	        result = new Thing(hash.containsKey(argv[2].toString()) ?
-				   IntThing.ONE : IntThing.ZERO);
+	        result = IntThing.create(hash.containsKey(argv[2].toString()));
 		break;
 		
 	    default:
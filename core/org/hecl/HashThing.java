@@ -21,19 +21,78 @@ import java.util.Enumeration;
 
 /**
  * The <code>HashThing</code> class represents a hash table type in Hecl.
+ * It is an open addressing hash table of its own, rather than a
+ * Hashtable, and it remembers the order that keys were added in, so
+ * hkeys, foreach and the string form always list them in that order.
+ * Entries are kept in arrays in the order they were added, and the
+ * table itself only holds their positions.  Copies share the arrays
+ * until one of them is changed.
  * 
  * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
  * @version 1.0
  */
 public class HashThing implements RealThing {
-    private Hashtable val = null;
+    /* Slots in index that have never been used, and slots whose entry
+     * has been removed. */
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    /* The entries, in the order they were added.  A removed entry has
+     * a null key. */
+    private String[] keys;
+    private Thing[] values;
+    private int[] hashes;
+
+    /* Entries used, including removed ones. */
+    private int used = 0;
+
+    /* Entries that haven't been removed. */
+    private int live = 0;
+
+    /* The table: entry + 1, EMPTY or REMOVED.  Its size is a power of
+     * two, and it's never more than 3/4 full, counting removed
+     * slots, which aren't reused until the table is rebuilt. */
+    private int[] index;
+
+    /* The keys and values as a list, if it's been made since the hash
+     * last changed. */
+    private ListThing pairs = null;
+
+    /* True if the arrays are shared with a copy, so they have to be
+     * copied before anything is changed. */
+    private boolean lent = false;
+
+    /* True if the values may be in another hash as well.  Like in
+     * ListThing, they are marked to be copied when handed out. */
+    private boolean shared = false;
+
+    /* The Rep of the list this hash is an element of.  See
+     * ListThing.Rep. */
+    private ListThing.Rep cachedin = null;
 
     /**
      * Creates a new, empty <code>HashThing</code> instance.
      *  
      */
     public HashThing() {
-        val = new Hashtable();
+	init(0);
+    }
+
+    private HashThing(int n) {
+	init(n);
+    }
+
+    /* A copy of from, sharing its arrays. */
+    private HashThing(HashThing from) {
+	keys = from.keys;
+	values = from.values;
+	hashes = from.hashes;
+	index = from.index;
+	used = from.used;
+	live = from.live;
+	pairs = from.pairs;
+	lent = true;
+	from.lent = true;
     }
 
     /**
@@ -43,7 +102,11 @@ public class HashThing implements RealThing {
      *            a <code>Hashtable</code> value
      */
     public HashThing(Hashtable h) {
-        val = h;
+	init(h.size());
+        for (Enumeration e = h.keys(); e.hasMoreElements();) {
+            String key = (String) e.nextElement();
+            insert(key, (Thing) h.get(key));
+        }
     }
 
     /**
@@ -57,21 +120,34 @@ public class HashThing implements RealThing {
      *                if an error occurs
      */
     public HashThing(Vector v) throws HeclException {
-        if ((v.size() % 2) != 0) {
+	this(ListThing.getList(ListThing.create(v)));
+    }
+
+    private HashThing(ListThing l) throws HeclException {
+	int n = l.size();
+        if ((n % 2) != 0) {
             throw new HeclException("list must have even number of elements");
         }
-        /*
-         * FIXME: I pulled this '3' (initial size of the hash table is list size +
-         * 3), out of the air... better suggestions based on experimentation are
-         * welcome.
-         */
-        val = new Hashtable((v.size() >> 1) + 3);
-
-        for (Enumeration e = v.elements(); e.hasMoreElements();) {
-            String key = ((Thing) e.nextElement()).toString();
-            Thing value = (Thing) e.nextElement();
-            val.put(key, value);
-        }
+	init(n >> 1);
+	for (int i = 0; i < n; i += 2) {
+	    insert(l.elementAt(i).toString(), l.elementAt(i + 1));
+	}
+    }
+
+    /* Sets up empty arrays with room for n entries. */
+    private void init(int n) {
+	int size = 8;
+	while (size * 3 < n * 4 + 4) {
+	    size <<= 1;
+	}
+	index = new int[size];
+	int room = size * 3 / 4;
+	keys = new String[room];
+	values = new Thing[room];
+	hashes = new int[room];
+	used = 0;
+	live = 0;
+	lent = false;
     }
 
     public String thingclass() {
@@ -91,31 +167,52 @@ public class HashThing implements RealThing {
 
     /**
      * <code>setHashFromAny</code> attempts to create a HashThing from the
-     * Thing passed to it.
+     * Thing passed to it, and returns it.
      * 
      * @param thing
      *            a <code>Thing</code> value
+     * @return a <code>HashThing</code> value
      * @exception HeclException
      *                if an error occurs
      */
-    private static void setHashFromAny(Thing thing) throws HeclException {
+    private static HashThing setHashFromAny(Thing thing) throws HeclException {
         RealThing realthing = thing.getVal();
 
         if (realthing instanceof HashThing) {
             /* Nothing to be done. */
-            return;
+            return (HashThing)realthing;
         }
 
-        HashThing newthing = null;
-        Vector list = ListThing.get(thing);
-
-        newthing = new HashThing(list);
+	HashThing newthing = new HashThing(ListThing.getList(thing));
         thing.setVal(newthing);
+	return newthing;
+    }
+
+    /**
+     * <code>getHash</code> attempts to return the HashThing of a given
+     * Thing, in the process transforming that Thing into a HashThing
+     * internally.
+     *
+     * @param thing a <code>Thing</code> value
+     * @return a <code>HashThing</code> value
+     * @exception HeclException if an error occurs
+     */
+    public static HashThing getHash(Thing thing) throws HeclException {
+        HashThing gethash = setHashFromAny(thing);
+
+	/* Like ListThings, if we are slated to be copied, then make
+	 * sure our elements are as well. */
+	if (thing.copy) {
+	    gethash.shared = true;
+	}
+	return gethash;
     }
 
     /**
      * <code>get</code> attempts to return a Hashtable from a given Thing, in
      * the process transforming that Thing into a HashThing internally.
+     * The Hashtable is a new one, and changing it does not change the
+     * hash.
      * 
      * @param thing
      *            a <code>Thing</code> value
@@ -124,26 +221,257 @@ public class HashThing implements RealThing {
      *                if an error occurs
      */
     public static Hashtable get(Thing thing) throws HeclException {
-        setHashFromAny(thing);
-        HashThing gethash = (HashThing) thing.getVal();
+	HashThing gethash = getHash(thing);
+	Hashtable h = new Hashtable(gethash.live * 2 + 1);
+	for (int i = 0; i < gethash.used; i++) {
+	    if (gethash.keys[i] != null) {
+		h.put(gethash.keys[i], gethash.handOut(gethash.values[i]));
+	    }
+	}
+	return h;
+    }
 
-	/* Like ListThings, if we are slated to be copied, then make
-	 * sure our elements are as well. */
-	if (thing.copy) {
-	    for (Enumeration e = gethash.val.elements(); e.hasMoreElements();) {
-		Thing te = (Thing) e.nextElement();
-		te.copy = true;
+    /* Spread the bits of the hash code around a little, as only the
+     * low ones pick the slot. */
+    private static int mix(int h) {
+	return h ^ (h >>> 16);
+    }
+
+    /* The slot holding key, or -1 if it's not there. */
+    private int findSlot(String key, int h) {
+	int mask = index.length - 1;
+	for (int i = mix(h) & mask; ; i = (i + 1) & mask) {
+	    int s = index[i];
+	    if (s == EMPTY) {
+		return -1;
 	    }
+	    if (s != REMOVED && hashes[s - 1] == h && key.equals(keys[s - 1])) {
+		return i;
+	    }
+	}
+    }
+
+    /**
+     * The <code>get</code> method returns the value of a key, or null
+     * if it is not in the hash.
+     *
+     * @param key a <code>String</code> value
+     * @return a <code>Thing</code> value
+     */
+    public Thing get(String key) {
+	int slot = findSlot(key, key.hashCode());
+	return slot < 0 ? null : handOut(values[index[slot] - 1]);
+    }
+
+    private Thing handOut(Thing t) {
+	if (shared) {
+	    t.copy = true;
 	}
+	return t;
+    }
+
+    /**
+     * The <code>containsKey</code> method returns true if the key is
+     * in the hash.
+     *
+     * @param key a <code>String</code> value
+     * @return a <code>boolean</code> value
+     */
+    public boolean containsKey(String key) {
+	return findSlot(key, key.hashCode()) >= 0;
+    }
 
-	/* Return a copy if it's a literal (i.e., it comes from the
-	 * parser).  I would prefer to do this sort of operation in
-	 * one place, as it's also used in ListThing. */
- 	if (thing.isLiteral()) {
-	    return ((HashThing)gethash.deepcopy()).val;
-	} else {
-	    return gethash.val;
+    /**
+     * The <code>put</code> method sets the value of a key.  A new key
+     * goes after all the others.
+     *
+     * @param key a <code>String</code> value
+     * @param value a <code>Thing</code> value
+     */
+    public void put(String key, Thing value) {
+	changed();
+	own();
+	insert(key, value);
+    }
+
+    private void insert(String key, Thing value) {
+	int h = key.hashCode();
+	int slot = findSlot(key, h);
+	if (slot >= 0) {
+	    values[index[slot] - 1] = value;
+	    return;
+	}
+	if (used == keys.length) {
+	    rebuild(live + 1);
 	}
+	int e = used++;
+	keys[e] = key;
+	values[e] = value;
+	hashes[e] = h;
+	live++;
+	int mask = index.length - 1;
+	int i = mix(h) & mask;
+	while (index[i] != EMPTY) {
+	    i = (i + 1) & mask;
+	}
+	index[i] = e + 1;
+    }
+
+    /**
+     * The <code>remove</code> method removes a key, and returns its
+     * value, or null if it wasn't in the hash.
+     *
+     * @param key a <code>String</code> value
+     * @return a <code>Thing</code> value
+     */
+    public Thing remove(String key) {
+	int slot = findSlot(key, key.hashCode());
+	if (slot < 0) {
+	    return null;
+	}
+	changed();
+	own();
+	int e = index[slot] - 1;
+	Thing old = handOut(values[e]);
+	keys[e] = null;
+	values[e] = null;
+	index[slot] = REMOVED;
+	live--;
+	return old;
+    }
+
+    /**
+     * The <code>clear</code> method removes all keys.
+     *
+     */
+    public void clear() {
+	changed();
+	init(0);
+    }
+
+    /**
+     * The <code>size</code> method returns the number of keys.
+     *
+     * @return an <code>int</code> value
+     */
+    public int size() {
+	return live;
+    }
+
+    /**
+     * The <code>keys</code> method returns the keys, in the order they
+     * were added.
+     *
+     * @return a <code>String[]</code> value
+     */
+    public String[] keys() {
+	String[] res = new String[live];
+	int n = 0;
+	for (int i = 0; i < used; i++) {
+	    if (keys[i] != null) {
+		res[n++] = keys[i];
+	    }
+	}
+	return res;
+    }
+
+    /**
+     * The <code>pairs</code> method returns the keys and values as a
+     * list - key, value, key, value and so on.  The list is kept until
+     * the hash changes, so it must not be modified.
+     *
+     * @return a <code>ListThing</code> value
+     */
+    ListThing pairs() {
+	ListThing l = pairs;
+	if (l == null) {
+	    Thing[] a = new Thing[live * 2];
+	    int n = 0;
+	    for (int i = 0; i < used; i++) {
+		if (keys[i] != null) {
+		    a[n++] = new Thing(keys[i]);
+		    a[n++] = values[i];
+		}
+	    }
+	    l = new ListThing(a, n);
+	    pairs = l;
+	}
+	if (shared) {
+	    l.markShared();
+	}
+	return l;
+    }
+
+    /* Makes room for at least n entries, and drops removed ones. */
+    private void rebuild(int n) {
+	String[] oldkeys = keys;
+	Thing[] oldvalues = values;
+	int oldused = used;
+	init(n < 4 ? 4 : n + (n >> 1));
+	for (int i = 0; i < oldused; i++) {
+	    if (oldkeys[i] != null) {
+		insert(oldkeys[i], oldvalues[i]);
+	    }
+	}
+    }
+
+    /* Stops sharing the arrays with any copies. */
+    private void own() {
+	if (lent) {
+	    String[] k = new String[keys.length];
+	    Thing[] v = new Thing[values.length];
+	    int[] h = new int[hashes.length];
+	    int[] ix = new int[index.length];
+	    System.arraycopy(keys, 0, k, 0, used);
+	    System.arraycopy(values, 0, v, 0, used);
+	    System.arraycopy(hashes, 0, h, 0, used);
+	    System.arraycopy(index, 0, ix, 0, index.length);
+	    keys = k;
+	    values = v;
+	    hashes = h;
+	    index = ix;
+	    lent = false;
+	}
+    }
+
+    private void changed() {
+	pairs = null;
+	cachedin = ListThing.Rep.drop(cachedin);
+    }
+
+    /* Puts the hash in r.  Its values are in pairs, so a change to
+     * one of them drops r through that. */
+    void cacheIn(ListThing.Rep r) {
+	cachedin = r.take(cachedin);
+	ListThing l = pairs;
+	if (l != null) {
+	    l.cachedin = r.take(l.cachedin);
+	}
+    }
+
+    /**
+     * <code>copy</code> returns a new HashThing with the same keys,
+     * in the same order, and the same values.  The two share their
+     * arrays until one of them is changed.
+     *
+     * @return a <code>HashThing</code> value
+     */
+    HashThing copy() {
+	return new HashThing(this);
+    }
+
+    /**
+     * The <code>share</code> method returns a copy of the hash, like
+     * <code>copy</code>, and from then on values handed out by either
+     * of them are marked to be copied, rather than changed in place.
+     *
+     * @return a <code>HashThing</code> value
+     */
+    public HashThing share() {
+	HashThing h = new HashThing(this);
+	h.shared = true;
+	shared = true;
+	return h;
     }
 
     /**
@@ -153,14 +481,13 @@ public class HashThing implements RealThing {
      * @throws HeclException
      */
     public RealThing deepcopy() throws HeclException {
-        Hashtable h = new Hashtable();
-
-        for (Enumeration e = val.keys(); e.hasMoreElements();) {
-            String key = (String) e.nextElement();
-            h.put(key, ((Thing) val.get(key)).deepcopy());
-        }
-
-        return new HashThing(h);
+	HashThing h = new HashThing(live);
+	for (int i = 0; i < used; i++) {
+	    if (keys[i] != null) {
+		h.insert(keys[i], values[i].deepcopy());
+	    }
+	}
+	return h;
     }
 
     /**
@@ -169,19 +496,8 @@ public class HashThing implements RealThing {
      * only that there are guaranteed to be an even number of elements.
      * 
      * @return a <code>String</code> value
-     * @exception HeclException
-     *                if an error occurs
      */
     public String getStringRep() {
-	ListThing newthing = null;
-	try {
-	    Vector v = ListThing.get(new Thing(new HashThing(val)));
-	    newthing = new ListThing(v);
-	} catch (HeclException he) {
-	    /* We should never get here because a hash is always a
-	     * well formed list. */
-	}
-        return newthing.getStringRep();
+	return pairs().getStringRep();
     }
-
 }
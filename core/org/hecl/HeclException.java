@@ -15,7 +15,6 @@
 
 package org.hecl;
 
-import java.util.Stack;
 import java.util.Vector;
 
 /**
@@ -28,9 +27,24 @@ import java.util.Vector;
 public class HeclException extends Exception {
     public String code = null;
 
-    Stack stack;
     Thing value = null;
-    Thing message = null;
+    String message = null;
+
+    /* The line the error occurred on, or NOLINE. */
+    private int errline = NOLINE;
+
+    /* The commands and lines added by where(), innermost first.  The
+     * exception stack is only turned into Things if someone asks for
+     * it. */
+    private String[] wherecmds = null;
+    private int[] wherelines = null;
+    private int wheredepth = 0;
+
+    private static final int NOLINE = Integer.MIN_VALUE;
+
+    /* True if this is one of an interpreter's signals.  See
+     * signal. */
+    private boolean reused = false;
 
     static final String BREAK = "BREAK";
 
@@ -68,21 +82,48 @@ public class HeclException extends Exception {
 
     HeclException(String s, String exception_code, Thing value) {
 	super(s);
-	this.message = new Thing(s);
+	this.message = s;
 	this.value = value;
         this.code = exception_code;
-        pushException(s);
     }
 
     /**
-     * <code>pushException</code> adds to the exception stack.
+     * The <code>signal</code> method readies an exception used for
+     * break, continue or return to be thrown again.  The interpreter
+     * keeps one of each around, so that they aren't created (and
+     * their Java stack trace filled in) each time.  They must not be
+     * held on to after they've been caught, so they are swapped for
+     * a copy with <code>escape</code> before they can leave the
+     * interpreter.
+     *
+     * @param value a <code>Thing</code> value
+     * @return a <code>HeclException</code> value
      */
-    private void pushException(String s) {
-        stack = new Stack();
-        Vector lst = new Vector();
-        lst.addElement(new Thing(code));
-        lst.addElement(message);
-        stack.push(new Thing(new ListThing(lst)));
+    HeclException signal(Thing value) {
+	this.reused = true;
+	this.value = value;
+	this.errline = NOLINE;
+	this.wheredepth = 0;
+	return this;
+    }
+
+    /**
+     * The <code>escape</code> method returns an exception that can be
+     * handed to code outside the interpreter, which may keep it: a
+     * new copy of this one if it's a signal, or else this one.
+     *
+     * @return a <code>HeclException</code> value
+     */
+    HeclException escape() {
+	if (!reused) {
+	    return this;
+	}
+	HeclException e = new HeclException(message, code, value);
+	e.errline = errline;
+	for (int i = 0; i < wheredepth; i++) {
+	    e.where(wherecmds[i], wherelines[i]);
+	}
+	return e;
     }
 
     /**
@@ -93,10 +134,20 @@ public class HeclException extends Exception {
      *            a <code>String</code> containing the command name.
      */
     public void where(String cmd, int lineno) {
-        Vector lst = new Vector();
-        lst.addElement(new Thing(cmd));
-        lst.addElement(IntThing.create(lineno));
-        stack.push(new Thing(new ListThing(lst)));
+	if (wherecmds == null) {
+	    wherecmds = new String[4];
+	    wherelines = new int[4];
+	} else if (wheredepth == wherecmds.length) {
+	    String[] newcmds = new String[wheredepth * 2];
+	    int[] newlines = new int[wheredepth * 2];
+	    System.arraycopy(wherecmds, 0, newcmds, 0, wheredepth);
+	    System.arraycopy(wherelines, 0, newlines, 0, wheredepth);
+	    wherecmds = newcmds;
+	    wherelines = newlines;
+	}
+	wherecmds[wheredepth] = cmd;
+	wherelines[wheredepth] = lineno;
+	wheredepth++;
     }
 
     /**
@@ -117,7 +168,21 @@ public class HeclException extends Exception {
      */
 
     public Thing getStack() {
-        return ListThing.create((Vector) stack);
+	Vector stack = new Vector();
+        Vector lst = new Vector();
+        lst.addElement(new Thing(code));
+        lst.addElement(new Thing(message));
+	if (errline != NOLINE) {
+	    lst.addElement(IntThing.create(errline));
+	}
+        stack.addElement(new Thing(new ListThing(lst)));
+	for (int i = 0; i < wheredepth; i++) {
+	    lst = new Vector();
+	    lst.addElement(new Thing(wherecmds[i]));
+	    lst.addElement(IntThing.create(wherelines[i]));
+	    stack.addElement(new Thing(new ListThing(lst)));
+	}
+        return ListThing.create(stack);
     }
 
     /**
@@ -186,20 +251,12 @@ public class HeclException extends Exception {
 
     /**
      * The <code>setLine</code> method sets the line number of an
-     * error.  FIXME - this could probably be done in a cleaner way...
+     * error.
      *
      * @param lineno an <code>int</code> value
      * @exception HeclException if an error occurs
      */
     public void setLine(int lineno) throws HeclException {
-	Vector ex = (Vector)stack;
-	Vector err;
-	err = ListThing.get((Thing)ex.elementAt(0));
-	Thing l = IntThing.create(lineno);
-	if (err.size() == 2) {
-	    err.addElement(l);
-	} else {
-	    err.setElementAt(l, 2);
-	}
+	errline = lineno;
     }
 }
@@ -24,6 +24,7 @@ public class HeclTask {
 	this.tscript = script;
 	this.tgeneration = generation;
 	this.tname = (name != null ? name : "task") + sep + ++tasknum;
+	this.queued = System.currentTimeMillis();
     }
 
 
@@ -32,6 +33,11 @@ public class HeclTask {
 	    //System.err.println("exec="+tscript.toString());
 	    this.result = ip.eval(tscript,0);
 	} catch(Exception e) {
+	    /* The task may be run while other code is being evaluated,
+	     * so a break, continue or return signal gets this far. */
+	    if(e instanceof HeclException) {
+		e = ((HeclException)e).escape();
+	    }
 	    this.error = e;
 	    if(this.showbgerror) {
 		e.printStackTrace();
@@ -84,6 +90,14 @@ public class HeclTask {
     protected Exception error = null;
     protected boolean showbgerror = true;
     protected volatile boolean done = false;
+
+    /* Where the task is in its TimerQueue, and the order it was
+     * added in. */
+    int heapindex = -1;
+    long seq;
+
+    /* When the task was created, for EventStats. */
+    long queued;
     
     protected static long tasknum;
 }
@@ -0,0 +1,88 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Hashtable;
+
+/**
+ * The <code>Histogram</code> class counts times in milliseconds.
+ * Besides the number of times, their total and the largest, it keeps
+ * counts in buckets that double in size: bucket 0 is 0ms, bucket 1 is
+ * 1ms, bucket 2 is 2-3ms, bucket 3 is 4-7ms, and so on, with the last
+ * one counting everything from 16384ms up.  It isn't synchronized.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+class Histogram {
+    static final int BUCKETS = 16;
+
+    private long count = 0;
+    private long total = 0;
+    private long max = 0;
+    private int[] buckets = new int[BUCKETS];
+
+    /**
+     * The <code>add</code> method counts a time.  Negative times,
+     * which can happen if the clock is changed, count as 0.
+     *
+     * @param ms a <code>long</code> value
+     */
+    void add(long ms) {
+	if (ms < 0) {
+	    ms = 0;
+	}
+	count++;
+	total += ms;
+	if (ms > max) {
+	    max = ms;
+	}
+	int b = 0;
+	while (ms > 0 && b < BUCKETS - 1) {
+	    ms >>= 1;
+	    b++;
+	}
+	buckets[b]++;
+    }
+
+    void reset() {
+	count = 0;
+	total = 0;
+	max = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	    buckets[i] = 0;
+	}
+    }
+
+    /**
+     * The <code>toThing</code> method returns a hash with the count,
+     * total, max and buckets.
+     *
+     * @return a <code>Thing</code> value
+     */
+    Thing toThing() {
+	Hashtable h = new Hashtable();
+	h.put("count", LongThing.create(count));
+	h.put("total", LongThing.create(total));
+	h.put("max", LongThing.create(max));
+	Thing[] b = new Thing[BUCKETS];
+	for (int i = 0; i < BUCKETS; i++) {
+	    b[i] = IntThing.create(buckets[i]);
+	}
+	h.put("buckets", new Thing(new ListThing(b, BUCKETS)));
+	return new Thing(new HashThing(h));
+    }
+}
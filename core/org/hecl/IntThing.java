@@ -26,12 +26,27 @@ public class IntThing extends IntegralThing {
     public static IntThing ONE = new IntThing(1);
     public static IntThing NEGONE = new IntThing(-1);
 
+    /* IntThings for small values, shared by the Things made by
+     * create.  Nothing calls set on them: incr and friends give the
+     * Thing a new IntThing instead, so each Thing is still its own
+     * and can be changed or converted to another type without
+     * touching the others. */
+    private static final int SMALLMIN = -128;
+    private static final int SMALLMAX = 255;
+    private static final IntThing[] small = new IntThing[SMALLMAX - SMALLMIN + 1];
+
+    static {
+	for (int i = SMALLMIN; i <= SMALLMAX; i++) {
+	    small[i - SMALLMIN] = new IntThing(i);
+	}
+    }
+
     /**
      * Creates a new <code>IntThing</code> instance equal to 0.
      *
      */
     public IntThing() {
-	val = 0;
+	this(0);
     }
 
     /**
@@ -41,6 +56,7 @@ public class IntThing extends IntegralThing {
      *            an <code>int</code> value
      */
     public IntThing(int i) {
+	super(INT);
 	val = i;
     }
 
@@ -52,7 +68,7 @@ public class IntThing extends IntegralThing {
      *            a <code>boolean</code> value
      */
     public IntThing(boolean b) {
-        val = b == true ? 1 : 0;
+        this(b == true ? 1 : 0);
     }
 
     /**
@@ -62,7 +78,7 @@ public class IntThing extends IntegralThing {
      *            a <code>String</code> value
      */
     public IntThing(String s) {
-        set(Integer.parseInt(s));
+        this(Integer.parseInt(s));
     }
 
     public String thingclass() {
@@ -70,27 +86,31 @@ public class IntThing extends IntegralThing {
     }
 
     /**
-     * The <code>create</code> method creates and returns a newly allocated
-     * Thing with an IntThing internal representation.
+     * The <code>create</code> method returns a Thing with an IntThing
+     * internal representation.  For small values, which most are,
+     * the IntThing is shared.
      *
      * @param i
      *            an <code>int</code> value
      * @return a <code>Thing</code> value
      */
     public static Thing create(int i) {
-        return new Thing(new IntThing(i));
+	if (i < SMALLMIN || i > SMALLMAX) {
+	    return new Thing(new IntThing(i));
+	}
+	return new Thing(small[i - SMALLMIN]);
     }
 
     /**
-     * The <code>create</code> method creates and returns a newly allocated
-     * Thing with an IntThing internal representation.
+     * The <code>create</code> method returns a Thing with an IntThing
+     * internal representation, 1 for true and 0 for false.
      *
      * @param b
      *            an <code>boolean</code> value
      * @return a <code>Thing</code> value
      */
     public static Thing create(boolean b) {
-        return new Thing(new IntThing(b));
+        return create(b ? 1 : 0);
     }
 
     /**
@@ -157,6 +177,8 @@ public class IntThing extends IntegralThing {
 
     /**
      * <code>set</code> sets the internal value of an IntThing to i.
+     * It must not be used on the IntThings shared by
+     * <code>create</code>.
      *
      * @param i
      *            an <code>int</code> value
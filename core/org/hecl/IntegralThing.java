@@ -23,6 +23,10 @@ package org.hecl;
  * @version 1.0
  */
 public abstract class IntegralThing extends NumberThing {
+    protected IntegralThing(int numtype) {
+	super(numtype);
+    }
+
     public boolean isIntegral() {
 	return true;
     }
@@ -81,9 +81,6 @@ public class Interp extends Thread/*implements Runnable*/ {
      */
     static final Thing GLOBALREFTHING = new Thing("");
 
-    /* Used to cache command lookups. */
-    public long cacheversion = 0;
-
     /* Do we have the Java reflection stuff? */
     private static boolean javacmdpresent = false;
 
@@ -94,6 +91,25 @@ public class Interp extends Thread/*implements Runnable*/ {
      */
     protected Hashtable commands = new Hashtable();
 
+    /* True if commands is shared, with a forked interpreter or
+     * after reset, and so must be copied before it's changed. */
+    private boolean sharedcommands = false;
+
+    /* Proc -> this interpreter's copy of it, for procs that belong
+     * to another interpreter.  See ownProc. */
+    private Hashtable proccopies = null;
+
+    /* Forks given back with giveFork, to be used again. */
+    private Vector spareforks = new Vector();
+
+    /* Changes every time commands does, so that Stanzas can tell if
+     * the command they last looked up is still the right one.  Epochs
+     * are handed out by nextEpoch, so two different tables never have
+     * the same one. */
+    volatile int cmdepoch = nextEpoch();
+
+    private static int lastepoch = 0;
+
     /**
      * The <code>auxdata</code> <code>Hashtable</code> is a place to
      * store extra information about the state of the program.
@@ -101,10 +117,54 @@ public class Interp extends Thread/*implements Runnable*/ {
      */
     protected Hashtable auxdata = new Hashtable();
 
-    protected Stack stack = new Stack();
+    /* Spare argv arrays, indexed by length.  See takeArgv. */
+    private Thing[][] spareargv = new Thing[SPAREARGV][];
+
+    private static final int SPAREARGV = 8;
+
+    /* The variable stack.  frames[0] holds the globals. */
+    protected VarFrame[] frames = new VarFrame[16];
+    protected int depth = 0;
     protected Stack error = new Stack();
 
-    protected Vector timers = new Vector();
+    /* The thread that owns the interpreter, or null if any thread
+     * may use it.  See setOwner. */
+    private volatile Thread owner = null;
+
+    /* Waited on by the event loop, notified when there's something
+     * for it to do. */
+    private final Object eventlock = new Object();
+
+    /* Bumped, with eventlock held, whenever the event loop is woken
+     * up, so that it doesn't miss a wakeup that comes between
+     * looking for work and waiting. */
+    private int wakeups = 0;
+
+    /* The number of evals running.  See evalCode. */
+    private int evaldepth = 0;
+
+    /* Thrown by break, continue and return.  See
+     * HeclException.signal. */
+    final HeclException breaksignal =
+	new HeclException("", HeclException.BREAK);
+    final HeclException continuesignal =
+	new HeclException("", HeclException.CONTINUE);
+    final HeclException returnsignal =
+	new HeclException("", HeclException.RETURN, null);
+
+    protected TimerQueue timers = new TimerQueue();
+    private EventStats eventstats = new EventStats();
+
+    /* The profiler while it's running, or null.  Stanza.invoke only
+     * calls it if it's there. */
+    Profiler profiler = null;
+
+    /* The profiler with the latest results, running or not. */
+    private Profiler profiledata = null;
+
+    /* Keeps track of the commands running, for AllocStats.  Made
+     * when it's first needed. */
+    private AllocStats allocstats = null;
     protected Vector asyncs = new Vector();
     protected Vector idle = new Vector();
     protected Hashtable waittokens = new Hashtable();
@@ -166,11 +226,183 @@ public class Interp extends Thread/*implements Runnable*/ {
 	}
 
         // Set up stack frame for globals.
-        stack.push(new Hashtable());
+        frames[depth++] = new VarFrame();
         initInterp();
 	start();
     }
 
+    /**
+     * Creates a new <code>Interp</code> instance that starts out the
+     * same as <code>parent</code>.  See <code>fork</code>.
+     *
+     * @param parent an <code>Interp</code> value
+     */
+    private Interp(Interp parent) throws HeclException {
+	VarFrame global = new VarFrame();
+	synchronized (parent) {
+	    commands = parent.shareCommands();
+	    cmdepoch = parent.cmdepoch;
+	    sharedcommands = true;
+
+	    auxdata = copyAuxData(parent.auxdata);
+	    ci = copyClassCmds(parent.ci);
+
+	    /* The child gets its own Things.  Lists and hashes share
+	     * their elements with the parent's until one of the two
+	     * changes them. */
+	    Hashtable vars = parent.frames[0].getVariables();
+	    for (Enumeration e = vars.keys(); e.hasMoreElements();) {
+		String key = (String)e.nextElement();
+		global.put(key, ((Thing)vars.get(key)).lazycopy());
+	    }
+	}
+	frames[depth++] = global;
+	start();
+    }
+
+    /**
+     * The <code>fork</code> method creates a new interpreter with the
+     * same commands, procs and global variables as this one, without
+     * loading or parsing anything again.  The command table is shared
+     * until one of the two interpreters changes it.  Procs are shared
+     * too, but as running code caches things in it, such as where
+     * variables are and which commands were found, each interpreter
+     * runs its own copy of a proc's code, made the first time it
+     * calls it (see <code>ownProc</code>).  Global values are shared
+     * until one of the two interpreters modifies them.  Local
+     * variables, pending events and the error stack are not carried
+     * over, and auxiliary data is copied, but not the objects in it.
+     *
+     * @return an <code>Interp</code> value
+     * @exception HeclException if an error occurs
+     */
+    public Interp fork() throws HeclException {
+	return new Interp(this);
+    }
+
+    /**
+     * The <code>takeFork</code> method returns a fork of this
+     * interpreter, like <code>fork</code>, but uses one given back
+     * with <code>giveFork</code> if there is one.  That is brought up
+     * to date with this interpreter's commands and globals, as if it
+     * had just been forked, and keeps the copies of the procs it has
+     * already run.
+     *
+     * @return an <code>Interp</code> value
+     * @exception HeclException if an error occurs
+     */
+    Interp takeFork() throws HeclException {
+	Interp ip = null;
+	synchronized (spareforks) {
+	    int n = spareforks.size();
+	    if (n > 0) {
+		ip = (Interp)spareforks.elementAt(n - 1);
+		spareforks.removeElementAt(n - 1);
+	    }
+	}
+	if (ip == null) {
+	    return fork();
+	}
+	synchronized (this) {
+	    ip.reset(frames[0].getVariables(), shareCommands(), auxdata, ci);
+	}
+	return ip;
+    }
+
+    /**
+     * The <code>giveFork</code> method gives back a fork from
+     * <code>takeFork</code>, once nothing is running in it.  It's
+     * terminated along with this interpreter.
+     *
+     * @param ip an <code>Interp</code> value
+     */
+    void giveFork(Interp ip) {
+	synchronized (spareforks) {
+	    if (running) {
+		spareforks.addElement(ip);
+		return;
+	    }
+	}
+	ip.terminate();
+    }
+
+    /**
+     * The <code>shareCommands</code> method returns the command
+     * table, marking it as shared, so that it's copied before this
+     * interpreter changes it.
+     *
+     * @return a <code>Hashtable</code> value
+     */
+    synchronized Hashtable shareCommands() {
+	sharedcommands = true;
+	return commands;
+    }
+
+    /**
+     * The <code>ownProc</code> method returns this interpreter's copy
+     * of a proc that belongs to another interpreter, making it the
+     * first time it's needed.
+     *
+     * @param proc a <code>Proc</code> value
+     * @return a <code>Proc</code> value
+     * @exception HeclException if an error occurs
+     */
+    Proc ownProc(Proc proc) throws HeclException {
+	if (proccopies == null) {
+	    proccopies = new Hashtable();
+	}
+	Proc res = (Proc)proccopies.get(proc);
+	if (res == null) {
+	    res = proc.copy(this);
+	    proccopies.put(proc, res);
+	}
+	return res;
+    }
+
+    /* A copy of auxdata - the table, not the objects in it. */
+    static Hashtable copyAuxData(Hashtable from) {
+	Hashtable res = new Hashtable();
+	for (Enumeration e = from.keys(); e.hasMoreElements();) {
+	    Object key = e.nextElement();
+	    res.put(key, from.get(key));
+	}
+	return res;
+    }
+
+    /* A copy of ci, the class commands. */
+    static Vector copyClassCmds(Vector from) {
+	Vector res = new Vector();
+	for (int i = 0; i < from.size(); i++) {
+	    ClassCommandInfo info = (ClassCommandInfo)from.elementAt(i);
+	    res.addElement(new ClassCommandInfo(info.forClass(),
+						info.getCommand()));
+	}
+	return res;
+    }
+
+    /**
+     * The <code>ownCommands</code> method is called before changing
+     * the command table.  It makes sure that the table isn't shared
+     * with another interpreter, and moves on to a new epoch.
+     *
+     */
+    private void ownCommands() {
+	cmdepoch = nextEpoch();
+	if (sharedcommands) {
+	    Hashtable newcmds = new Hashtable();
+	    for (Enumeration e = commands.keys(); e.hasMoreElements();) {
+		Object key = e.nextElement();
+		newcmds.put(key, commands.get(key));
+	    }
+	    commands = newcmds;
+	    sharedcommands = false;
+	}
+    }
+
+    private static synchronized int nextEpoch() {
+	return ++lastepoch;
+    }
+
 //#ifdef j2se
     protected String[] hashKeysToArray(Hashtable h) {
 	return hashKeysToArray(h, "");
@@ -216,7 +448,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 	    String line = null;
 //#if j2se
 
-	    Hashtable vars = getVarhash(-1);
+	    Hashtable vars = getFrame(-1).getVariables();
 	    newsz = commands.size() + vars.size();
 
 	    /* If the number of commands or variables has increased,
@@ -404,6 +636,42 @@ public class Interp extends Thread/*implements Runnable*/ {
     }
     
     
+    /**
+     * The <code>takeArgv</code> method returns an array of Things of
+     * the given length, reusing one given back with
+     * <code>giveArgv</code> if there is one.  Only the thread
+     * evaluating code in the interpreter may call it.
+     *
+     * @param len an <code>int</code> value
+     * @return a <code>Thing[]</code> value
+     */
+    Thing[] takeArgv(int len) {
+	if (len < SPAREARGV) {
+	    Thing[] a = spareargv[len];
+	    if (a != null) {
+		spareargv[len] = null;
+		return a;
+	    }
+	}
+	return new Thing[len];
+    }
+
+    /**
+     * The <code>giveArgv</code> method hands back an array that is
+     * no longer used by anyone, for <code>takeArgv</code> to reuse.
+     *
+     * @param a a <code>Thing[]</code> value
+     */
+    void giveArgv(Thing[] a) {
+	int len = a.length;
+	if (len < SPAREARGV) {
+	    for (int i = 0; i < len; i++) {
+		a[i] = null;
+	    }
+	    spareargv[len] = a;
+	}
+    }
+
     /**
      * Add a new command to an <code>Interp</code>.
      *
@@ -411,6 +679,7 @@ public class Interp extends Thread/*implements Runnable*/ {
      * @param c the command to add.
      */
     public synchronized String addCommand(String name,Command c) {
+	ownCommands();
 	commands.put(name,c);
 	return name;
     }
@@ -421,6 +690,7 @@ public class Interp extends Thread/*implements Runnable*/ {
      * @param name the name of the command to add.
      */
     public synchronized void removeCommand(String name) {
+	ownCommands();
 	commands.remove(name);
     }
 
@@ -469,20 +739,82 @@ public class Interp extends Thread/*implements Runnable*/ {
      * evaluation.
      * @exception HeclException if an error occurs.
      */
-    public synchronized Thing eval(Thing in) throws HeclException {
+    public Thing eval(Thing in) throws HeclException {
 	//System.err.println("-->eval: "+in.toString());
-	return CodeThing.get(this, in).run(this);
+	Thread o = owner;
+	if (o == null) {
+	    synchronized (this) {
+		return evalCode(in);
+	    }
+	}
+	if (o != Thread.currentThread()) {
+	    return evalAsyncAndWait(in);
+	}
+	return evalCode(in);
+    }
+
+    /* Runs code, for eval.  A break, continue or return that gets
+     * out of the outermost eval leaves the interpreter, so it's
+     * swapped for a copy of the signal. */
+    private Thing evalCode(Thing in) throws HeclException {
+	if (evaldepth > 0) {
+	    return CodeThing.get(this, in).run(this);
+	}
+	evaldepth++;
+	try {
+	    return CodeThing.get(this, in).run(this);
+	} catch (HeclException he) {
+	    throw he.escape();
+	} finally {
+	    evaldepth--;
+	}
+    }
+
+    /**
+     * The <code>setOwner</code> method hands the interpreter over to
+     * a single thread, or gives it back to all threads if
+     * <code>t</code> is null.  An owned interpreter doesn't lock
+     * anything while evaluating code or accessing variables.  Code
+     * that <code>eval</code>'s in it from other threads is passed to
+     * the owner with <code>evalAsyncAndWait</code>, and events are
+     * only serviced by the owner, so the owner needs to be running
+     * the event loop - usually it's the interpreter's own thread.
+     * Other threads must not access its variables directly.
+     *
+     * @param t a <code>Thread</code> value
+     */
+    public void setOwner(Thread t) {
+	synchronized (this) {
+	    owner = t;
+	}
+	wakeup();
+    }
+
+    /**
+     * The <code>getOwner</code> method returns the thread that owns
+     * the interpreter, or null.
+     *
+     * @return a <code>Thread</code> value
+     */
+    public Thread getOwner() {
+	return owner;
     }
 
     public HeclTask evalIdle(Thing idleThing) {
-	return addTask(idle,new HeclTask(idleThing,idlegeneration,IDLEPREFIX),-1);
+	return addTask(idle,new HeclTask(idleThing,idlegeneration,IDLEPREFIX),
+		       EventStats.IDLE);
     }
 
     public HeclTask evalAsync(Thing asyncThing) {
-	return addTask(asyncs, new HeclTask(asyncThing,0,ASYNCPREFIX),-1);
+	return addTask(asyncs, new HeclTask(asyncThing,0,ASYNCPREFIX),
+		       EventStats.ASYNC);
     }
 
     public Thing evalAsyncAndWait(Thing in) throws HeclException {
+	if (owner == Thread.currentThread()) {
+	    /* Waiting on ourselves would be a bad idea. */
+	    return eval(in, 0);
+	}
 	HeclTask t = evalAsync(in);
 	t.setErrorPrint(false);
 	boolean done = false;
@@ -524,9 +856,17 @@ public class Interp extends Thread/*implements Runnable*/ {
      * @exception HeclException if an error occurs
      */
     public Thing eval(Thing in, int level) throws HeclException {
+	Thread o = owner;
+	if (o != null && o != Thread.currentThread()) {
+	    if (level != 0) {
+		throw new HeclException(
+		    "Interp is owned by another thread, can only eval at level 0");
+	    }
+	    return evalAsyncAndWait(in);
+	}
 	Thing result = null;
 	Vector savedstack = new Vector();
-	int stacklen = stack.size();
+	int stacklen = depth;
 	int i = 0;
 	int end = 0;
 	HeclException save_exception = null;
@@ -551,7 +891,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 	}
 	/* ... and then restore them after evaluating the code. */
 	for (i = savedstack.size() - 1; i >= 0; i--) {
-	    stackPush((Hashtable)savedstack.elementAt(i));
+	    stackPush((VarFrame)savedstack.elementAt(i));
 	}
 	if (save_exception != null) {
 	    throw save_exception;
@@ -566,15 +906,10 @@ public class Interp extends Thread/*implements Runnable*/ {
     }
 	    
     public synchronized HeclTask getEvent(String name) {
-	int n = timers.size();
-	Vector v = new Vector();
-	HeclTask t = null;
-	for(int i=0; i<n; ++i) {
-	    t = (HeclTask)timers.elementAt(i);
-	    if(name.equals(t.getName()))
-		return t;
-	}
-	n = idle.size();
+	HeclTask t = timers.get(name);
+	if(t != null)
+	    return t;
+	int n = idle.size();
 	for(int i=0; i<n; ++i) {
 	    t = (HeclTask)idle.elementAt(i);
 	    if(name.equals(t.getName()))
@@ -584,36 +919,25 @@ public class Interp extends Thread/*implements Runnable*/ {
     }
     
     public synchronized Vector getAllEvents() {
-	int n = timers.size();
-	Vector v = new Vector();
+	Vector v = timers.elements();
+	int n = idle.size();
 	for(int i=0; i<n; ++i)
-	    v.addElement(timers.elementAt(i));
-	n = idle.size();
-	for(int i=0; i<n; ++i)
-	    v.addElement(timers.elementAt(i));
+	    v.addElement(idle.elementAt(i));
 	return v;
     }
 
     public HeclTask addTimer(Thing timerThing, int millisecs) {
-	synchronized (timers) {
-	    int n = timers.size();
-	    long ts = System.currentTimeMillis()+millisecs;
-	    HeclTask t = new HeclTask(timerThing, ts, TIMERPREFIX);
-
-	    int i;
-	    for(i=0; i<n; ++i) {
-		HeclTask other = (HeclTask)timers.elementAt(i);
-		if(other.getGeneration() > ts)
-		    break;
-	    }
-	    //System.err.println("Adding timer, time="+ts);
-	    return addTask(timers,t,i);
-	}
+	long ts = System.currentTimeMillis()+millisecs;
+	HeclTask t = new HeclTask(timerThing, ts, TIMERPREFIX);
+	timers.add(t);
+	eventstats.queued(EventStats.TIMER, timers.size());
+	wakeup();
+	return t;
     }
 
 
     public void cancelTimer(String name) {
-	cancelTask(timers,name);
+	timers.remove(name);
     }
     
     public void cancelIdle(String name) {
@@ -629,29 +953,48 @@ public class Interp extends Thread/*implements Runnable*/ {
     }
     
     
-    public synchronized boolean doOneEvent(int flags) {
+    public boolean doOneEvent(int flags) {
 
 	if((flags & ALL_EVENTS) == 0)
 	    flags = ALL_EVENTS;
 
+	Thread o = owner;
+	if (o != null && o != Thread.currentThread()) {
+	    /* Only the owner runs events.  Wait until something
+	     * changes. */
+	    if ((flags & DONT_WAIT) == 0) {
+		synchronized(eventlock) {
+		    try {
+			eventlock.wait(1000);
+		    } catch (InterruptedException e) {
+		    }
+		}
+	    }
+	    return false;
+	}
+
 	// The core of this procedure is an infinite loop, even though
 	// we only service one event.  The reason for this is that we
 	// may be processing events that don't do anything inside of Hecl.
 	int count = 0;
 	while(true) {
+	    int seen;
+	    synchronized(eventlock) {
+		seen = wakeups;
+	    }
 
 	    // First check for async events...
 	    HeclTask t = nextTask(asyncs,-1);
 	    if(t != null) {
-		return executeTask(t);
+		return executeTask(t, EventStats.ASYNC);
 	    }
 
 	    long now = System.currentTimeMillis();
 
 	    if((flags & TIMER_EVENTS) != 0) {
-		t = nextTask(timers,now);
+		t = timers.poll(now);
 		if(t != null) {
-		    return executeTask(t);
+		    return executeTask(t, EventStats.TIMER);
 		}
 	    }
 
@@ -660,11 +1003,9 @@ public class Interp extends Thread/*implements Runnable*/ {
 		maxblocktime = 0;
 	    } else {
 		maxblocktime = 1000;
-		synchronized(this) {
-		    if(timers.size() > 0) {
-			t = (HeclTask)timers.elementAt(0);
-			maxblocktime = t.getGeneration() - now;
-		    }
+		t = timers.peek();
+		if(t != null) {
+		    maxblocktime = t.getGeneration() - now;
 		}
 	    }
 	    // this may reduce maxblocktime!
@@ -675,10 +1016,12 @@ public class Interp extends Thread/*implements Runnable*/ {
 	    if(count > 0 || maxblocktime <= 0)
 		break;
 
-	    yield();			    // give other thread a chance
-	    synchronized(this) {
+	    synchronized(eventlock) {
 		try {
-		    this.wait(maxblocktime);
+		    /* Unless something came in since we looked. */
+		    if (wakeups == seen) {
+			eventlock.wait(maxblocktime);
+		    }
 		} catch (InterruptedException e) {
 		    // it doesn't matter
 		}
@@ -732,9 +1075,21 @@ public class Interp extends Thread/*implements Runnable*/ {
      *
      */
     public void terminate() {
-	running = false;
-	synchronized(this) {
-	    notify();
+	synchronized (spareforks) {
+	    running = false;
+	    for (int i = 0; i < spareforks.size(); i++) {
+		((Interp)spareforks.elementAt(i)).terminate();
+	    }
+	    spareforks.removeAllElements();
+	}
+	wakeup();
+    }
+
+    /* Wakes up the event loop. */
+    private void wakeup() {
+	synchronized(eventlock) {
+	    ++wakeups;
+	    eventlock.notifyAll();
 	}
     }
 
@@ -787,8 +1142,8 @@ public class Interp extends Thread/*implements Runnable*/ {
 	/* Hash table commands. */
 	HashCmds.load(this);
 
-        commands.put("puts", new PutsCmd());
-        commands.put("sort", new SortCmd());
+        addCommand("puts", new PutsCmd());
+        addCommand("sort", new SortCmd());
 
 
 //#if cldc == 1.0
@@ -811,7 +1166,7 @@ public class Interp extends Thread/*implements Runnable*/ {
     public synchronized void cmdRename(String oldname, String newname)
 	throws HeclException {
 	cmdAlias(oldname, newname);
-	commands.remove(oldname);
+	removeCommand(oldname);
     }
 
     public synchronized void cmdAlias(String oldname, String newname)
@@ -820,7 +1175,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 	if (tmp == null) {
             throw new HeclException("Command " + oldname + " does not exist");
 	}
-	commands.put(newname, tmp);
+	addCommand(newname, tmp);
     }
 
 
@@ -829,8 +1184,8 @@ public class Interp extends Thread/*implements Runnable*/ {
      * the Proc class.
      *
      */
-    public synchronized void stackIncr() {
-        stackPush(new Hashtable());
+    public void stackIncr() {
+        stackPush(new VarFrame());
     }
 
     /**
@@ -838,31 +1193,58 @@ public class Interp extends Thread/*implements Runnable*/ {
      * commands like upeval can save it. If it's not saved, it's gone.
      *
      */
-    public synchronized Hashtable stackDecr() {
-        return (Hashtable) stack.pop();
+    public VarFrame stackDecr() {
+	if (owner == null) {
+	    synchronized (this) {
+		return popFrame();
+	    }
+	}
+	return popFrame();
+    }
+
+    private VarFrame popFrame() {
+	VarFrame f = frames[--depth];
+	frames[depth] = null;
+	return f;
     }
 
     /**
-     * <code>stackDecr</code> pushes a new variable hashtable
-     * (probably saved via upeval) onto the stack frame.
+     * <code>stackPush</code> pushes a variable frame (probably saved
+     * via upeval, or created by a proc) onto the stack.
      *
      */
-    public synchronized void stackPush(Hashtable vars) {
-        cacheversion++;
-        stack.push(vars);
+    public void stackPush(VarFrame vars) {
+	if (owner == null) {
+	    synchronized (this) {
+		pushFrame(vars);
+	    }
+	} else {
+	    pushFrame(vars);
+	}
+    }
+
+    private void pushFrame(VarFrame vars) {
+	if (depth == frames.length) {
+	    VarFrame[] newframes = new VarFrame[depth * 2];
+	    System.arraycopy(frames, 0, newframes, 0, depth);
+	    frames = newframes;
+	}
+	frames[depth++] = vars;
     }
 
     /**
-     * <code>getVarhash</code> fetches the variable Hashtable at the
-     * given level, where -1 means to just get the hashtable on top of
-     * the stack.
+     * <code>getFrame</code> fetches the variable frame at the given
+     * level, where -1 means to just get the frame on top of the
+     * stack.
      *
      * @param level an <code>int</code> value
-     * @return a <code>Hashtable</code> value
+     * @return a <code>VarFrame</code> value
      */
-    private Hashtable getVarhash(int level) {
-	return level < 0 ? (Hashtable)stack.peek()
-	    : (Hashtable)stack.elementAt(level);
+    VarFrame getFrame(int level) {
+	if (level >= depth) {
+	    throw new ArrayIndexOutOfBoundsException(level);
+	}
+	return frames[level < 0 ? depth - 1 : level];
     }
 
     /**
@@ -897,8 +1279,17 @@ public class Interp extends Thread/*implements Runnable*/ {
      * @return a <code>Thing</code> value
      * @exception HeclException if an error occurs
      */
-    public synchronized Thing getVar(String varname, int level) throws HeclException {
-        Hashtable lookup = getVarhash(level);
+    public Thing getVar(String varname, int level) throws HeclException {
+	if (owner == null) {
+	    synchronized (this) {
+		return lookupVar(varname, level);
+	    }
+	}
+	return lookupVar(varname, level);
+    }
+
+    private Thing lookupVar(String varname, int level) throws HeclException {
+        VarFrame lookup = getFrame(level);
 	//System.out.println("getvar: " + varname + " " + level + " " + lookup);
         Thing res = (Thing) lookup.get(varname);
 //#ifdef old
@@ -909,7 +1300,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 //#else
 	if(res == GLOBALREFTHING) {
 	    // ref to a global var
-	    Hashtable globalhash = getVarhash(0);
+	    VarFrame globalhash = getFrame(0);
 	    res = (Thing)globalhash.get(varname);
 	    if(res == GLOBALREFTHING) {
 		// should not happen, but just in case...
@@ -965,12 +1356,19 @@ public class Interp extends Thread/*implements Runnable*/ {
      * @param value a <code>Thing</code> value
      * @param level an <code>int</code> value
      */
-    public synchronized void setVar(String varname, Thing value, int level) {
-        Hashtable lookup = getVarhash(level);
+    public void setVar(String varname, Thing value, int level) {
+	if (owner == null) {
+	    synchronized (this) {
+		storeVar(varname, value, level);
+	    }
+	} else {
+	    storeVar(varname, value, level);
+	}
+    }
+
+    private void storeVar(String varname, Thing value, int level) {
+        VarFrame lookup = getFrame(level);
 
-	// Bump the cache number so that SubstThing.get refetches the
-	// variable.
-        cacheversion++;
 	//if(value == GLOBALREFTHING) System.err.println("flag '"+varname+"' as global on level="+level);
 	//System.err.println("set local("+level+") var="+varname + ", val="+value.toString());
 
@@ -985,7 +1383,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 	      * global level.  */
 	     if (oldval.global && level != 0) {
 		 value.global = true;
-		 Hashtable globalhash = getVarhash(0);
+		 VarFrame globalhash = getFrame(0);
 		 globalhash.put(varname, value);
 	     }
 	}
@@ -994,7 +1392,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 
 	if (value.isLiteral()) {
 	    try {
-		Thing copy = value.deepcopy();
+		Thing copy = value.lazycopy();
 		value = copy;
 	    } catch (HeclException he) {
 		/* This isn't going to happen - we're dealing with a
@@ -1006,7 +1404,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 	// first take care of GLOBALREFTHING used to flag ref to global var
 	if(value == GLOBALREFTHING) {
 	    // do not clutter global table with GLOBALREFTHING
-	    Hashtable globalhash = getVarhash(0);
+	    VarFrame globalhash = getFrame(0);
 	    if(lookup != globalhash) {
 		//System.err.println(" not on global level");
 		lookup.put(varname, value);
@@ -1029,7 +1427,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 	    if(oldval == GLOBALREFTHING) {
 		// level must be at != 0
 		//System.err.println(" forwarded to global value");
-		lookup = getVarhash(0);
+		lookup = getFrame(0);
 	    }
 	}
 	lookup.put(varname, value);
@@ -1047,20 +1445,27 @@ public class Interp extends Thread/*implements Runnable*/ {
 	unSetVar(varname.toString(),-1);
     }
 
-    public synchronized void unSetVar(String varname) throws HeclException {
+    public void unSetVar(String varname) throws HeclException {
 	unSetVar(varname,-1);
     }
     
-    public synchronized void unSetVar(String varname,int level) throws HeclException {
-        Hashtable lookup = getVarhash(level);
-	// Bump the cache number so that SubstThing.get refetches the
-	// variable.
+    public void unSetVar(String varname,int level) throws HeclException {
+	if (owner == null) {
+	    synchronized (this) {
+		removeVar(varname, level);
+	    }
+	} else {
+	    removeVar(varname, level);
+	}
+    }
+
+    private void removeVar(String varname,int level) throws HeclException {
+        VarFrame lookup = getFrame(level);
 	Thing value = (Thing)lookup.get(varname);
 	if (value != null) {
-	    cacheversion++;
 	    lookup.remove(varname);
 	    if (value.global) {
-		Hashtable globalhash = getVarhash(0);
+		VarFrame globalhash = getFrame(0);
 		value = (Thing)globalhash.get(varname);
 		if (value != null) {
 		    globalhash.remove(varname);
@@ -1105,9 +1510,13 @@ public class Interp extends Thread/*implements Runnable*/ {
      * @param level an <code>int</code> value
      * @return a <code>boolean</code> value
      */
-    public synchronized boolean existsVar(String varname, int level) {
-        Hashtable lookup = getVarhash(level);
-        return lookup.containsKey(varname);
+    public boolean existsVar(String varname, int level) {
+	if (owner == null) {
+	    synchronized (this) {
+		return getFrame(level).containsKey(varname);
+	    }
+	}
+	return getFrame(level).containsKey(varname);
     }
 
 
@@ -1120,6 +1529,82 @@ public class Interp extends Thread/*implements Runnable*/ {
         error.push(err);
     }
 
+    /**
+     * The <code>getGlobals</code> method returns a new Hashtable with
+     * copies of all the global variables.
+     *
+     * @return a <code>Hashtable</code> value
+     * @exception HeclException if an error occurs
+     */
+    synchronized Hashtable getGlobals() throws HeclException {
+	Hashtable vars = frames[0].getVariables();
+	for (Enumeration e = vars.keys(); e.hasMoreElements();) {
+	    Object key = e.nextElement();
+	    vars.put(key, ((Thing)vars.get(key)).deepcopy());
+	}
+	return vars;
+    }
+
+    /**
+     * The <code>reset</code> method puts the interpreter back into
+     * the state saved with <code>getGlobals</code> and the given
+     * <code>commands</code>, which it won't change, auxiliary data
+     * and class commands, which are copied, throwing away everything
+     * else: other variables, stack frames, commands, pending events,
+     * wait tokens, profiler results and the owner.
+     *
+     * @param globals a <code>Hashtable</code> from getGlobals
+     * @param cmds a <code>Hashtable</code> of commands
+     * @param aux a <code>Hashtable</code> of auxiliary data
+     * @param classcmds a <code>Vector</code> of ClassCommandInfo
+     * @exception HeclException if an error occurs
+     */
+    void reset(Hashtable globals, Hashtable cmds, Hashtable aux,
+	       Vector classcmds) throws HeclException {
+	synchronized (this) {
+	    resetState(globals, cmds, aux, classcmds);
+	}
+	/* The event loop may be waiting to be the owner. */
+	wakeup();
+    }
+
+    private void resetState(Hashtable globals, Hashtable cmds, Hashtable aux,
+			    Vector classcmds) throws HeclException {
+	owner = null;
+	timers.clear();
+	synchronized (asyncs) {
+	    asyncs.removeAllElements();
+	}
+	synchronized (idle) {
+	    idle.removeAllElements();
+	}
+	while (depth > 0) {
+	    frames[--depth] = null;
+	}
+	VarFrame global = new VarFrame();
+	for (Enumeration e = globals.keys(); e.hasMoreElements();) {
+	    String key = (String)e.nextElement();
+	    global.put(key, ((Thing)globals.get(key)).lazycopy());
+	}
+	frames[depth++] = global;
+
+	/* The saved table is never changed, it's copied first. */
+	commands = cmds;
+	cmdepoch = nextEpoch();
+	sharedcommands = true;
+	auxdata = copyAuxData(aux);
+	ci = copyClassCmds(classcmds);
+	classcmdcache = new Hashtable();
+	waittokens = new Hashtable();
+	profiler = null;
+	profiledata = null;
+	allocstats = null;
+//#if files || j2se
+	currentFile = new Thing("");
+//#endif
+	clearError();
+    }
+
     /**
      * <code>clearError</code> clears the error stack.
      *
@@ -1217,7 +1702,7 @@ public class Interp extends Thread/*implements Runnable*/ {
 	}
 	HeclTask t = nextTask(idle,oldgeneration);
 	if(t != null)
-	    t.execute(this);
+	    runTask(t, EventStats.IDLE);
 	if(idle.size() > 0)
 	    maxblocktime = 0;
 	return true;
@@ -1225,26 +1710,23 @@ public class Interp extends Thread/*implements Runnable*/ {
     
 
     /**
-     * Service at most one idle task of the idle task queue.
+     * Add a task to the end of a queue, and wake up the event loop.
      *
      * @param v A <code>Vector</code> of tasks to add the task to.
      * @param task The <code>HeclTask</code> to add.
-     * @param pos The </code>int</code> position of <code>v</code> where to
-     * add <code>task</code> being in the range from 0 to
-     * <code>v.size()</code>.  -1 indicates to add <code>task</code> to the
-     * end of <code>v</code>.
+     * @param queue Which queue <code>v</code> is, for EventStats.
      *
-     * @return A <code>String</code> being the name of the inserted task.
+     * @return The inserted <code>HeclTask</code>.
      */
-    private HeclTask addTask(Vector v,HeclTask task,int pos) {
+    private HeclTask addTask(Vector v,HeclTask task,int queue) {
+	int depth;
 	synchronized (v) {
-	if(pos < 0)
 	    v.addElement(task);
-	else
-	    v.insertElementAt(task,pos);
-//	notify();
-	return task;
+	    depth = v.size();
 	}
+	eventstats.queued(queue, depth);
+	wakeup();
+	return task;
     }
     
 
@@ -1275,9 +1757,9 @@ public class Interp extends Thread/*implements Runnable*/ {
      * @return Always the boolean value <code>true</code> to indicate
      * that a task has been serviced.
      */
-    private boolean executeTask(HeclTask task) {
+    private boolean executeTask(HeclTask task, int queue) {
 	try {
-	    task.execute(this);
+	    runTask(task, queue);
 	}
 	catch(Exception e) {
 	    // Nothing to do. It is expected that each task handles
@@ -1287,6 +1769,99 @@ public class Interp extends Thread/*implements Runnable*/ {
 	return true;
     }
 
+    /* Runs a task from one of the queues, keeping track of how long
+     * it waited and ran. */
+    private void runTask(HeclTask task, int queue) {
+	long start = System.currentTimeMillis();
+	task.execute(this);
+	eventstats.ran(queue, task, start, System.currentTimeMillis());
+    }
+
+    /**
+     * The <code>eventStats</code> method returns statistics on the
+     * tasks run by the event loop.  It's a Hashtable from "async",
+     * "timer" and "idle" to a hash (as a Thing) with these keys:
+     * depth, the number of tasks waiting now; maxdepth, the most
+     * that have been waiting at once; wait, how long tasks waited
+     * between being queued and starting; run, how long they took to
+     * run; and, for timers only, late, how long after they were due
+     * they started.  The last three are themselves hashes, with the
+     * keys count, total, max and buckets - see Histogram.  Times are
+     * in milliseconds.
+     *
+     * @return a <code>Hashtable</code> value
+     */
+    public Hashtable eventStats() {
+	int[] depths = new int[3];
+	depths[EventStats.ASYNC] = asyncs.size();
+	depths[EventStats.TIMER] = timers.size();
+	depths[EventStats.IDLE] = idle.size();
+	return eventstats.snapshot(depths);
+    }
+
+    /**
+     * The <code>resetEventStats</code> method starts the event loop
+     * statistics from scratch.
+     *
+     */
+    public void resetEventStats() {
+	eventstats.reset();
+    }
+
+    /**
+     * The <code>startProfiler</code> method starts recording where
+     * the time goes in the commands and procs run in this
+     * interpreter, adding to the results recorded since the last
+     * <code>resetProfiler</code>.
+     *
+     */
+    public synchronized void startProfiler() {
+	if (profiledata == null) {
+	    profiledata = new Profiler();
+	}
+	profiler = profiledata;
+    }
+
+    /**
+     * The <code>stopProfiler</code> method stops recording.  The
+     * results are kept.
+     *
+     */
+    public synchronized void stopProfiler() {
+	profiler = null;
+    }
+
+    /**
+     * The <code>resetProfiler</code> method throws away the results
+     * recorded so far.
+     *
+     */
+    public synchronized void resetProfiler() {
+	profiledata = new Profiler();
+	if (profiler != null) {
+	    profiler = profiledata;
+	}
+    }
+
+    /**
+     * The <code>getProfiler</code> method returns the Profiler with
+     * the latest results, or null if the profiler has never been
+     * started.
+     *
+     * @return a <code>Profiler</code> value
+     */
+    public Profiler getProfiler() {
+	return profiledata;
+    }
+
+    /* The AllocStats for this interpreter's commands. */
+    AllocStats allocStats() {
+	if (allocstats == null) {
+	    allocstats = new AllocStats();
+	}
+	return allocstats;
+    }
+
     /**
      * The <code>backgroundError</code> method can be called to
      * dispatch a bgerror command.
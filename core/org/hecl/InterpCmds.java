@@ -20,10 +20,6 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
-//#if memdebug && j2se
-import java.lang.ref.WeakReference;
-//#endif
-
 /**
  * The <code>InterpCmds</code> implements various Hecl commands that
  * deal with the state of the interpreter.
@@ -61,6 +57,8 @@ class InterpCmds extends Operator {
     protected static final int TOTALMEM = 24;
 
     public static final int ALIAS = 25;
+    public static final int PROFILE = 26;
+    public static final int ALLOC = 27;
 
     public static final int HASCLASS = 70;//Class.forName()
 
@@ -68,11 +66,20 @@ class InterpCmds extends Operator {
 
 //#if android || j2se
     public static final int GETINTERP = 100;
-//#if memdebug
-    public static final int DUMPREFS = 101;
-//#endif
 //#endif
 
+    /**
+     * The <code>isSet</code> method returns true if <code>c</code> is
+     * the set command, which Stanza can run itself for variables kept
+     * in slots.
+     *
+     * @param c a <code>Command</code> value
+     * @return a <code>boolean</code> value
+     */
+    static boolean isSet(Command c) {
+	return c instanceof InterpCmds && ((InterpCmds)c).cmdcode == SET;
+    }
+
     public Thing operate(int cmd, Interp interp, Thing[] argv) throws HeclException {
 	Thing result = null;
 	int retval = 0;
@@ -95,7 +102,7 @@ class InterpCmds extends Operator {
 
 	  case PROC:
 	      if (argv.length == 4) {
-		  interp.commands.put(argv[1].toString(), new Proc(argv[2], argv[3]));
+		  interp.addCommand(argv[1].toString(), new Proc(argv[2], argv[3]));
 	      } else {
 		  return ObjectThing.create(new Proc(argv[1], argv[2]));
 	      }
@@ -169,8 +176,7 @@ class InterpCmds extends Operator {
 	    break;
 
 	  case RETURN:
-	    throw new HeclException("", HeclException.RETURN,
-				    argv.length > 1 ? argv[1] : Thing.emptyThing());
+	    throw interp.returnsignal.signal(argv.length > 1 ? argv[1] : Thing.emptyThing());
 
 	  case CATCH:
 	    try {
@@ -185,7 +191,7 @@ class InterpCmds extends Operator {
 		interp.setVar(argv[2].toString(),
 			      result!= null ? result : Thing.emptyThing());
 	    }
-	    return new Thing(retval != 0 ? IntThing.ONE : IntThing.ZERO);
+	    return IntThing.create(retval != 0);
 
 	  case THROW:
 	    String errmsg = argv[1].toString();
@@ -220,9 +226,19 @@ class InterpCmds extends Operator {
 		}
 		throw HeclException.createWrongNumArgsException(argv,2,"?id?");
 	    }
+	    if(subcmd.equals("stats")) {
+		if(argv.length == 2) {
+		    return new Thing(new HashThing(interp.eventStats()));
+		}
+		if(argv.length == 3 && argv[2].toString().equals("reset")) {
+		    interp.resetEventStats();
+		    break;
+		}
+		throw HeclException.createWrongNumArgsException(argv,2,"?reset?");
+	    }
 	    if(subcmd.equals("cancel")) {
 		for(int i=2; i<argv.length; ++i) {
-		    String s = argv[2].toString();
+		    String s = argv[i].toString();
 		    if(s.startsWith(Interp.IDLEPREFIX))
 			interp.cancelIdle(s);
 		    else if(s.startsWith(Interp.TIMERPREFIX))
@@ -308,6 +324,45 @@ class InterpCmds extends Operator {
 	    }
 	    return LongThing.create(new Date().getTime() - then);
 	    
+	  case PROFILE:
+	    subcmd = argv[1].toString();
+	    if(subcmd.equals("start")) {
+		interp.startProfiler();
+	    } else if(subcmd.equals("stop")) {
+		interp.stopProfiler();
+	    } else if(subcmd.equals("reset")) {
+		interp.resetProfiler();
+	    } else if(subcmd.equals("results")) {
+		Profiler p = interp.getProfiler();
+		return new Thing(p == null ? new HashThing()
+				 : new HashThing(p.results()));
+	    } else if(subcmd.equals("folded")) {
+		Profiler p = interp.getProfiler();
+		return new Thing(p == null ? "" : p.folded());
+	    } else {
+		throw new HeclException("Unknown profile option '"+subcmd+"'.");
+	    }
+	    break;
+
+	  case ALLOC:
+	    subcmd = argv[1].toString();
+	    if(subcmd.equals("start")) {
+		AllocStats.setEnabled(true);
+	    } else if(subcmd.equals("stop")) {
+		AllocStats.setEnabled(false);
+	    } else if(subcmd.equals("reset")) {
+		AllocStats.reset();
+	    } else if(subcmd.equals("stats")) {
+		return new Thing(new HashThing(AllocStats.stats()));
+//#if j2se && javaversion >= 1.6
+	    } else if(subcmd.equals("jmx")) {
+		AllocStats.registerMBean();
+//#endif
+	    } else {
+		throw new HeclException("Unknown alloc option '"+subcmd+"'.");
+	    }
+	    break;
+
 	  case HASCLASS:
 	    // beware: you may be get fooled in j2me when you use an
 	    // obfuscator: custom class names may get changed. Use only for
@@ -325,26 +380,6 @@ class InterpCmds extends Operator {
 //#if android || j2se
 	    case GETINTERP:
 		return ObjectThing.create(interp);
-//#if memdebug
-	    case DUMPREFS: {
-		System.gc();
-		System.out.println("NTHINGS: " + Thing.references.size());
-		int live = 0;
-		int dead = 0;
-		for (Enumeration e = Thing.references.elements(); e.hasMoreElements();) {
-		    WeakReference wr = (WeakReference)e.nextElement();
-		    Thing t = (Thing)wr.get();
-		    if (t == null) {
-			dead ++;
-		    } else {
-			live ++;
-		    }
-		}
-		System.out.println("Live things: " + live + " Dead things: " + dead);
-		return null;
-	    }
-//#endif
-
 //#endif
 
 	  case GC:
@@ -481,6 +516,8 @@ class InterpCmds extends Operator {
         cmdtable.put("exit", new InterpCmds(EXIT, 0, 1));
         cmdtable.put("upeval", new InterpCmds(UPCMD, 1, 2));
         cmdtable.put("time", new InterpCmds(TIMECMD, 1, 2));
+        cmdtable.put("profile", new InterpCmds(PROFILE, 1, 1));
+        cmdtable.put("alloc", new InterpCmds(ALLOC, 1, 1));
         cmdtable.put("after", new InterpCmds(AFTER, 1, -1));
 	cmdtable.put("bgerror", new InterpCmds(BGERROR, 1, 1));
         cmdtable.put("twait", new InterpCmds(TOKENWAIT, 1, 1));
@@ -502,9 +539,6 @@ class InterpCmds extends Operator {
 
 //#if android || j2se
         cmdtable.put("thisinterp", new InterpCmds(GETINTERP, 0, 0));
-//#if memdebug
-        cmdtable.put("dumprefs", new InterpCmds(DUMPREFS, 0, 0));
-//#endif
 //#endif
 
     }
@@ -0,0 +1,216 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The <code>InterpPool</code> class keeps a number of interpreters
+ * that have all been set up the same way - with the same modules
+ * loaded and the same bootstrap script run - and hands them out to
+ * run independent scripts on, possibly from many threads at once.
+ * Only the first interpreter is actually set up, the rest are
+ * created from it with <code>Interp.fork</code>.
+ * When an interpreter is given back, its global variables,
+ * commands, auxiliary data and class commands are put back the way
+ * they were after it was set up, so nothing from one script is seen
+ * by the next.
+ *
+ * <pre>
+ * InterpPool pool = new InterpPool(4, modules, "source lib.hcl");
+ * Interp ip = pool.borrow();
+ * try {
+ *     ip.eval(script);
+ * } finally {
+ *     pool.release(ip);
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class InterpPool {
+    /* All the interpreters. */
+    private Interp[] interps;
+
+    /* Copies of the global variables after setup. */
+    private Hashtable globals;
+
+    /* The commands after setup.  Never changed. */
+    private Hashtable commands;
+
+    /* The auxiliary data and class commands after setup. */
+    private Hashtable auxdata;
+    private Vector classcmds;
+
+    /* Interpreters that aren't being used. */
+    private Vector free = new Vector();
+
+    private boolean closed = false;
+
+    /**
+     * Creates a new <code>InterpPool</code> instance with
+     * <code>size</code> interpreters, that have
+     * <code>modules</code> loaded into them, and then
+     * <code>bootstrap</code> evaluated in them.
+     *
+     * @param size an <code>int</code> value
+     * @param modules a <code>HeclModule[]</code> value, or null
+     * @param bootstrap a <code>String</code> value, or null
+     * @exception HeclException if an error occurs
+     */
+    public InterpPool(int size, HeclModule[] modules, String bootstrap)
+	throws HeclException {
+	if (size < 1) {
+	    throw new HeclException("Interp pool size must be at least 1");
+	}
+	interps = new Interp[size];
+	Interp template = new Interp();
+	if (modules != null) {
+	    for (int j = 0; j < modules.length; j++) {
+		modules[j].loadModule(template);
+	    }
+	}
+	if (bootstrap != null) {
+	    template.eval(new Thing(bootstrap));
+	}
+	globals = template.getGlobals();
+	auxdata = Interp.copyAuxData(template.auxdata);
+	classcmds = Interp.copyClassCmds(template.ci);
+
+	/* The interpreters copy the table before changing it. */
+	commands = template.shareCommands();
+
+	interps[0] = template;
+	for (int i = 1; i < size; i++) {
+	    interps[i] = template.fork();
+	}
+	for (int i = 0; i < size; i++) {
+	    free.addElement(interps[i]);
+	}
+    }
+
+    /**
+     * The <code>borrow</code> method returns an interpreter that
+     * isn't being used, waiting for one if there are none.  The
+     * interpreter is owned by the calling thread (see
+     * Interp.setOwner) until it's given back with
+     * <code>release</code>.
+     *
+     * @return an <code>Interp</code> value
+     * @exception HeclException if the pool has been closed
+     */
+    public Interp borrow() throws HeclException {
+	Interp ip;
+	synchronized (this) {
+	    while (free.size() == 0 && !closed) {
+		try {
+		    wait();
+		} catch (InterruptedException e) {
+		    throw new HeclException("Interrupted waiting for an interp");
+		}
+	    }
+	    if (closed) {
+		throw new HeclException("Interp pool is closed");
+	    }
+	    ip = (Interp)free.elementAt(free.size() - 1);
+	    free.removeElementAt(free.size() - 1);
+	}
+	ip.setOwner(Thread.currentThread());
+	return ip;
+    }
+
+    /**
+     * The <code>release</code> method resets an interpreter and puts
+     * it back in the pool.
+     *
+     * @param ip an <code>Interp</code> value
+     * @exception HeclException if an error occurs
+     */
+    public void release(Interp ip) throws HeclException {
+	boolean found = false;
+	for (int i = 0; i < interps.length; i++) {
+	    if (interps[i] == ip) {
+		found = true;
+		break;
+	    }
+	}
+	if (!found) {
+	    throw new HeclException("Interp does not belong to this pool");
+	}
+	ip.reset(globals, commands, auxdata, classcmds);
+	synchronized (this) {
+	    if (closed) {
+		ip.terminate();
+		return;
+	    }
+	    free.addElement(ip);
+	    notify();
+	}
+    }
+
+    /**
+     * The <code>eval</code> method runs <code>script</code> in a
+     * borrowed interpreter and gives it back.
+     *
+     * @param script a <code>Thing</code> value
+     * @return a <code>Thing</code> value
+     * @exception HeclException if an error occurs
+     */
+    public Thing eval(Thing script) throws HeclException {
+	Interp ip = borrow();
+	try {
+	    return ip.eval(script);
+	} finally {
+	    release(ip);
+	}
+    }
+
+    /**
+     * The <code>size</code> method returns the number of
+     * interpreters in the pool.
+     *
+     * @return an <code>int</code> value
+     */
+    public int size() {
+	return interps.length;
+    }
+
+    /**
+     * The <code>available</code> method returns the number of
+     * interpreters that aren't being used.
+     *
+     * @return an <code>int</code> value
+     */
+    public synchronized int available() {
+	return free.size();
+    }
+
+    /**
+     * The <code>close</code> method terminates the interpreters.  Ones
+     * that are in use are terminated when they are released.
+     *
+     */
+    public synchronized void close() {
+	closed = true;
+	for (int i = 0; i < free.size(); i++) {
+	    ((Interp)free.elementAt(i)).terminate();
+	}
+	free.removeAllElements();
+	notifyAll();
+    }
+}
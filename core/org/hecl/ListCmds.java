@@ -15,7 +15,6 @@ limitations under the License.
 
 package org.hecl;
 
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -38,88 +37,76 @@ class ListCmds extends Operator {
     public static final int SEARCH = 9;
     public static final int JOIN = 10;
     public static final int SPLIT = 11;
+    public static final int LMAP = 12;
 
 
     public Thing operate(int cmd, Interp interp, Thing[] argv) throws HeclException {
 	int idx = 0;
 	int last = 0;
-	Vector list;
+	ListThing list;
 	Vector result;
-	ListThing newval = null;
 
 	switch (cmd) {
 	    case LIST:
-		result = new Vector();
-		for (int i = 1; i < argv.length; i++) {
-		    result.addElement(argv[i]);
-		}
-		return ListThing.create(result);
+		Thing[] a = new Thing[argv.length - 1];
+		System.arraycopy(argv, 1, a, 0, a.length);
+		return new Thing(new ListThing(a, a.length));
 
 	    case LLEN:
-		list = ListThing.get(argv[1]);
+		list = ListThing.getList(argv[1]);
 		return IntThing.create(list.size());
 
 	    case LINDEX:
 	      {
 		  Thing res = argv[1];
 		  for(int i = 2; i < argv.length; ++i) {
-		      list = ListThing.get(res);
+		      list = ListThing.getList(res);
 		      last = list.size();
 		      idx = getIndex(argv[i],last);
 		      if (idx >= last) {
-			  list = new Vector();
-			  res = ListThing.create(list);
+			  res = new Thing(new ListThing());
 		      } else {
-			  res = (Thing)list.elementAt(idx);
+			  res = list.elementAt(idx);
 		      }
 		  }
 		  return res;
 	      }
 
 	    case LINSERT:
-		list = ListThing.get(argv[1]);
+		list = writableList(argv[1]);
 		list.insertElementAt(argv[3], getIndex(argv[2],list.size()));
-		newval = new ListThing(list);
-		argv[1].setCopyVal(newval);
-		return new Thing(newval);
+		return new Thing(list);
 
 	    case LSET:
-		list = ListThing.get(argv[1]);
+		list = writableList(argv[1]);
 		idx = getIndex(argv[2],list.size());
 		if (argv.length < 4) {
 		    list.removeElementAt(idx);
 		} else {
 		    list.setElementAt(argv[3], idx);
 		}
-		newval = new ListThing(list);
-		argv[1].setCopyVal(newval);
-		return new Thing(newval);
+		return new Thing(list);
 
 	    case LRANGE:
-		list = ListThing.get(argv[1]);
+		list = ListThing.getList(argv[1]);
 		int ls = list.size();
 		int first = getIndex(argv[2],ls);
 		last = getIndex(argv[3],ls);
 		if (last < first || first > ls)
 		    return Thing.emptyThing();
-		result = new Vector();
-		for (int i = first; i <= last; i++) {
-		    result.addElement(list.elementAt(i));
-		}
-		return ListThing.create(result);
+		return new Thing(list.range(first, last));
 
 	    case LAPPEND:
-		list = ListThing.get(argv[1]);
+		list = writableList(argv[1]);
 		for (int i = 2; i < argv.length; i++) {
 		    list.addElement(argv[i]);
 		}
-		newval = new ListThing(list);
-		argv[1].setCopyVal(newval);
-		return new Thing(newval);
+		return new Thing(list);
 
 	    case FILTER:
 	    case SEARCH:
-		list = ListThing.get(argv[1]);
+	    case LMAP:
+		list = ListThing.getList(argv[1]);
 		result = new Vector();
 		String varname = argv[2].toString();
 		int sz = list.size();
@@ -130,12 +117,41 @@ class ListCmds extends Operator {
 		    brk = true;
 		}
 
+		/* Hang on to the elements as they are now, even if the
+		 * code changes the list. */
+		list = list.range(0, sz - 1);
+
+		boolean parallel = false;
+		if (argv.length > 4) {
+		    Properties p = new Properties(new Object[] {
+			"parallel", IntThing.create(false)});
+		    p.setProps(argv, 4);
+		    parallel = Thing.isTrue(p.getProp("parallel"));
+		}
+
+		/* Short lists aren't worth starting threads for. */
+		if (parallel && sz >= ParallelEval.THRESHOLD
+		    && ParallelEval.processors() > 1) {
+		    Thing[] items = list.toArray();
+		    Thing[] res = ParallelEval.eval(interp, varname, argv[3],
+						    items, cmd == FILTER);
+		    for (int i = 0; i < sz; i++) {
+			if (res[i] != null) {
+			    result.addElement(res[i]);
+			}
+		    }
+		    return ListThing.create(result);
+		}
+
 		for (int i = 0; i < sz; i++) {
-		    val = (Thing) list.elementAt(i);
+		    val = list.elementAt(i);
 		    val.copy = true; /* Make sure that the original value
 				      * doesn't get fiddled with. */
 		    interp.setVar(varname, val);
-		    if (IntThing.get(interp.eval(argv[3])) != 0) {
+		    Thing res = interp.eval(argv[3]);
+		    if (cmd == LMAP) {
+			result.addElement(res);
+		    } else if (IntThing.get(res) != 0) {
 			result.addElement(val);
 			if (brk == true) {
 			    break;
@@ -145,7 +161,7 @@ class ListCmds extends Operator {
 		return ListThing.create(result);
 
 	    case JOIN:
-		list = ListThing.get(argv[1]);
+		list = ListThing.getList(argv[1]);
 		StringBuffer strres = new StringBuffer("");
 		boolean firstone = true;
 		String joinstr = null;
@@ -155,13 +171,13 @@ class ListCmds extends Operator {
 		    joinstr = " ";
 		}
 
-		for (Enumeration e = list.elements(); e.hasMoreElements();) {
+		for (int i = 0; i < list.size(); i++) {
 		    if (firstone == false) {
 			strres.append(joinstr);
 		    } else {
 			firstone = false;
 		    }
-		    strres.append(((Thing) e.nextElement()).toString());
+		    strres.append(list.elementAt(i).toString());
 		}
 		return new Thing(strres);
 
@@ -180,6 +196,17 @@ class ListCmds extends Operator {
 	}
     }
 
+    /* The list that lappend, linsert and lset change.  A literal,
+     * or a value slated for copying, is left alone, and a copy of it
+     * is changed and returned instead. */
+    private static ListThing writableList(Thing t) throws HeclException {
+	ListThing list = ListThing.getList(t);
+	if (t.copy || t.isLiteral()) {
+	    list = list.range(0, list.size() - 1);
+	}
+	return list;
+    }
+
     public static int getIndex(Thing t,int llen) throws HeclException {
 	String s = t.toString();
 	if(s.equals("end"))
@@ -220,7 +247,8 @@ class ListCmds extends Operator {
         cmdtable.put("linsert", new ListCmds(LINSERT,3,3));
         cmdtable.put("lset", new ListCmds(LSET,2,3));
         cmdtable.put("lrange", new ListCmds(LRANGE,3,3));
-        cmdtable.put("filter", new ListCmds(FILTER,2,3));
+        cmdtable.put("filter", new ListCmds(FILTER,3,5));
+        cmdtable.put("lmap", new ListCmds(LMAP,3,5));
         cmdtable.put("search", new ListCmds(SEARCH,2,3));
         cmdtable.put("join", new ListCmds(JOIN,1,2));
         cmdtable.put("split", new ListCmds(SPLIT,1,2));
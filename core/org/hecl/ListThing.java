@@ -16,27 +16,55 @@
 package org.hecl;
 
 import java.util.Vector;
-import java.util.Hashtable;
-import java.util.Enumeration;
 
 /**
- * The <code>ListThing</code> class implements lists, storing them internally
- * as a Vector.
+ * The <code>ListThing</code> class implements lists, storing them
+ * internally in an array of Things that grows as needed.  A list made
+ * by <code>range</code> is a view onto the array of the list it came
+ * from, and the two share it until one of them changes an element
+ * that the other one can see.  <code>share</code> works the same way,
+ * and is how values are copied when they have to be, so that a copy
+ * of a big list costs nothing until one of the two is changed.
  * 
  * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
  * @version 1.0
  */
 public class ListThing implements RealThing {
-    protected Vector val = null;
+    private static final Thing[] NOITEMS = new Thing[0];
+
+    /* The elements are items[offset] to items[offset + count - 1]. */
+    private Thing[] items = NOITEMS;
+    private int offset = 0;
+    private int count = 0;
+
+    /* True if items belongs to another list, so that it has to be
+     * copied before anything is changed. */
+    private boolean view = false;
+
+    /* True if other lists have views of items, so that it has to be
+     * copied before any of the elements already there are changed.
+     * Adding to the end is fine, as views can't see past it. */
+    private boolean viewed = false;
+
+    /* True if the elements may be in another list as well.  They are
+     * marked to be copied when they are handed out, so that neither
+     * list can change the other's elements in place. */
+    private boolean shared = false;
 
     private int depth = 0;
 
+    /* The string representation, if it's been worked out. */
+    private Rep rep = null;
+
+    /* The Rep of the list this one is an element of, which has to be
+     * dropped when this one changes.  See Rep. */
+    Rep cachedin = null;
+
     /**
      * Creates a new, empty <code>ListThing</code> instance.
      *  
      */
     public ListThing() {
-        val = new Vector();
     }
 
     /**
@@ -45,7 +73,22 @@ public class ListThing implements RealThing {
      * @param v a <code>Vector</code> value
      */
     public ListThing(Vector v) {
-        val = v;
+	count = v.size();
+	items = new Thing[count];
+	v.copyInto(items);
+    }
+
+    /**
+     * Creates a new <code>ListThing</code> instance with the first
+     * <code>n</code> elements of <code>a</code>, which belongs to the
+     * list from now on.
+     *
+     * @param a a <code>Thing[]</code> value
+     * @param n an <code>int</code> value
+     */
+    public ListThing(Thing[] a, int n) {
+	items = a;
+	count = n;
     }
 
     /**
@@ -58,9 +101,11 @@ public class ListThing implements RealThing {
     public ListThing(String s) throws HeclException {
         ParseList parseList = new ParseList(s);
         /* FIXME - this probably doesn't handle newlines. */
-        val = parseList.parse();
-        if (val == null) {
-            val = new Vector();
+        Vector v = parseList.parse();
+        if (v != null) {
+	    count = v.size();
+	    items = new Thing[count];
+	    v.copyInto(items);
         }
     }
 
@@ -82,79 +127,273 @@ public class ListThing implements RealThing {
 
     /**
      * <code>setListFromAny</code> attempts to transform the given Thing into
-     * a ListThing typed Thing.
+     * a ListThing typed Thing, and returns the ListThing.  It's
+     * returned rather than fetched again by the caller, as a shared
+     * Thing might be changed to another type by another thread in
+     * the meantime.
      *
      * @param thing a <code>Thing</code> value
+     * @return a <code>ListThing</code> value
      * @exception HeclException if an error occurs
      */
-    private static void setListFromAny(Thing thing) throws HeclException {
+    private static ListThing setListFromAny(Thing thing) throws HeclException {
         RealThing realthing = thing.getVal();
 
         if (realthing instanceof ListThing) {
             /* Nothing to be done. */
-            return;
+            return (ListThing)realthing;
         }
 
-        RealThing newthing = null;
-        Vector newval = new Vector();
+        ListThing newthing = null;
 	if (realthing instanceof HashThing) {
-            Hashtable h = HashThing.get(thing);
-
-            for (Enumeration e = h.keys(); e.hasMoreElements();) {
-                String key = (String) e.nextElement();
-                newval.addElement(new Thing(key));
-                newval.addElement(h.get(key));
-            }
-            newthing = new ListThing(newval);
+	    ListThing pairs = ((HashThing)realthing).pairs();
+	    newthing = pairs.range(0, pairs.size() - 1);
         } else {
             newthing = new ListThing(realthing.getStringRep());
         }
 	thing.setVal(newthing);
+	return newthing;
     }
 
     /**
-     * <code>get</code> attempts to transform the given Thing into a List, and
-     * return its Vector value.
-     * 
+     * <code>getList</code> attempts to transform the given Thing into
+     * a List, and returns the ListThing.
+     *
      * @param thing a <code>Thing</code> value
-     * @return a <code>Vector</code> value
+     * @return a <code>ListThing</code> value
      * @exception HeclException if an error occurs
      */
-    public static Vector get(Thing thing) throws HeclException {
-        setListFromAny(thing);
-        ListThing getlist = (ListThing) thing.getVal();
+    public static ListThing getList(Thing thing) throws HeclException {
+        ListThing getlist = setListFromAny(thing);
 
 	/* If the thing is slated for copying, it's elements should be
 	 * as well. */
- 	if (thing.copy) {
-	    for (Enumeration e = getlist.val.elements(); e.hasMoreElements();) {
-		Thing te = (Thing) e.nextElement();
-		te.copy = true;
-	    }
+	if (thing.copy) {
+	    getlist.shared = true;
 	}
+	return getlist;
+    }
 
-        return getlist.val;
+    /**
+     * <code>get</code> attempts to transform the given Thing into a
+     * List, and returns a new Vector of its elements.  Changing the
+     * Vector does not change the list.
+     * 
+     * @param thing a <code>Thing</code> value
+     * @return a <code>Vector</code> value
+     * @exception HeclException if an error occurs
+     */
+    public static Vector get(Thing thing) throws HeclException {
+	ListThing l = getList(thing);
+	Vector v = new Vector(l.count);
+	for (int i = 0; i < l.count; i++) {
+	    v.addElement(l.handOut(l.items[l.offset + i]));
+	}
+        return v;
     }
 
     /**
      * <code>getArray</code> attempts to transform the given Thing
-     * into a List, and return it as an array of Things.
+     * into a List, and return it as a new array of Things.
      *
      * @param thing a <code>Thing</code> value
      * @return a <code>Thing[]</code> value
      * @exception HeclException if an error occurs
      */
     public static Thing[] getArray(Thing thing) throws HeclException {
-	Vector v = ListThing.get(thing);
-	Thing[] res = new Thing[v.size()];
-	int i = 0;
-	for (Enumeration e = v.elements(); e.hasMoreElements();) {
-	    res[i] = (Thing)e.nextElement();
-	    i ++;
+	return getList(thing).toArray();
+    }
+
+    /**
+     * The <code>toArray</code> method returns a new array with the
+     * elements of the list.
+     *
+     * @return a <code>Thing[]</code> value
+     */
+    public Thing[] toArray() {
+	Thing[] res = new Thing[count];
+	System.arraycopy(items, offset, res, 0, count);
+	if (shared) {
+	    for (int i = 0; i < count; i++) {
+		res[i].copy = true;
+	    }
 	}
 	return res;
     }
 
+    /**
+     * The <code>size</code> method returns the number of elements.
+     *
+     * @return an <code>int</code> value
+     */
+    public int size() {
+	return count;
+    }
+
+    /**
+     * The <code>elementAt</code> method returns the element at index
+     * <code>i</code>.
+     *
+     * @param i an <code>int</code> value
+     * @return a <code>Thing</code> value
+     * @exception HeclException if <code>i</code> is out of range
+     */
+    public Thing elementAt(int i) throws HeclException {
+	checkIndex(i, count);
+	return handOut(items[offset + i]);
+    }
+
+    private Thing handOut(Thing t) {
+	if (shared) {
+	    t.copy = true;
+	}
+	return t;
+    }
+
+    /**
+     * The <code>addElement</code> method adds an element to the end
+     * of the list.
+     *
+     * @param t a <code>Thing</code> value
+     */
+    public void addElement(Thing t) {
+	willChange(count + 1, true);
+	items[offset + count] = t;
+	count++;
+    }
+
+    /**
+     * The <code>insertElementAt</code> method inserts an element
+     * before index <code>i</code>.  An index past the end adds it to
+     * the end.
+     *
+     * @param t a <code>Thing</code> value
+     * @param i an <code>int</code> value
+     * @exception HeclException if <code>i</code> is out of range
+     */
+    public void insertElementAt(Thing t, int i) throws HeclException {
+	if (i > count) {
+	    i = count;
+	}
+	checkIndex(i, count + 1);
+	willChange(count + 1, i == count);
+	System.arraycopy(items, offset + i, items, offset + i + 1, count - i);
+	items[offset + i] = t;
+	count++;
+    }
+
+    /**
+     * The <code>setElementAt</code> method replaces the element at
+     * index <code>i</code>.
+     *
+     * @param t a <code>Thing</code> value
+     * @param i an <code>int</code> value
+     * @exception HeclException if <code>i</code> is out of range
+     */
+    public void setElementAt(Thing t, int i) throws HeclException {
+	checkIndex(i, count);
+	willChange(count, false);
+	items[offset + i] = t;
+    }
+
+    /**
+     * The <code>removeElementAt</code> method removes the element at
+     * index <code>i</code>.
+     *
+     * @param i an <code>int</code> value
+     * @exception HeclException if <code>i</code> is out of range
+     */
+    public void removeElementAt(int i) throws HeclException {
+	checkIndex(i, count);
+	willChange(count, false);
+	count--;
+	System.arraycopy(items, offset + i + 1, items, offset + i, count - i);
+	items[offset + count] = null;
+    }
+
+    /**
+     * The <code>range</code> method returns a list of the elements
+     * from <code>first</code> to <code>last</code>, inclusive.  It
+     * shares the elements with this list until either one of them is
+     * changed.
+     *
+     * @param first an <code>int</code> value
+     * @param last an <code>int</code> value
+     * @return a <code>ListThing</code> value
+     * @exception HeclException if the range is out of bounds
+     */
+    public ListThing range(int first, int last) throws HeclException {
+	if (last < first) {
+	    return new ListThing();
+	}
+	checkIndex(first, count);
+	checkIndex(last, count);
+	ListThing res = new ListThing(items, last - first + 1);
+	res.offset = offset + first;
+	res.view = true;
+	res.shared = shared;
+	viewed = true;
+	return res;
+    }
+
+    /**
+     * The <code>share</code> method returns a copy of the list that
+     * shares its elements with this one.  Nothing is actually copied
+     * until one of the two lists is changed, and elements handed out
+     * by either of them from then on are marked to be copied, rather
+     * than changed in place.
+     *
+     * @return a <code>ListThing</code> value
+     */
+    public ListThing share() {
+	ListThing res = new ListThing(items, count);
+	res.offset = offset;
+	res.view = true;
+	res.shared = true;
+	viewed = true;
+	shared = true;
+	return res;
+    }
+
+    /* For HashThing, whose values are shared with another hash. */
+    void markShared() {
+	shared = true;
+    }
+
+    private static void checkIndex(int i, int n) throws HeclException {
+	if (i < 0 || i >= n) {
+	    throw new HeclException("list index " + i + " out of range");
+	}
+    }
+
+    /* Called before changing the list, to make sure that it has room
+     * for newcount elements, and that it's not changing elements that
+     * another list can see. */
+    private void willChange(int newcount, boolean append) {
+	if (view || (viewed && !append) || offset + newcount > items.length) {
+	    int size = newcount;
+	    if (offset + newcount > items.length) {
+		/* Grow by half again, to keep adding to the end
+		 * cheap. */
+		size = newcount + (newcount >> 1) + 4;
+	    }
+	    Thing[] newitems = new Thing[size];
+	    System.arraycopy(items, offset, newitems, 0, count);
+	    items = newitems;
+	    offset = 0;
+	    view = false;
+	    viewed = false;
+	}
+	dropRep();
+    }
+
+    /* Drops the string representation, and that of the list this
+     * one is in. */
+    private void dropRep() {
+	rep = null;
+	cachedin = Rep.drop(cachedin);
+    }
+
     /**
      * <code>deepcopy</code> copies a list and all of its elements.
      * 
@@ -162,12 +401,12 @@ public class ListThing implements RealThing {
      * @throws HeclException
      */
     public RealThing deepcopy() throws HeclException {
-        Vector newv = new Vector();
-        for (Enumeration e = val.elements(); e.hasMoreElements();) {
-            newv.addElement(((Thing) e.nextElement()).deepcopy());
-        }
+	Thing[] newitems = new Thing[count];
+	for (int i = 0; i < count; i++) {
+	    newitems[i] = items[offset + i].deepcopy();
+	}
 
-        return new ListThing(newv);
+        return new ListThing(newitems, count);
     }
 
     /**
@@ -262,43 +501,116 @@ public class ListThing implements RealThing {
 
     /**
      * <code>getStringRep</code> returns a string representation of a
-     * ListThing.
+     * ListThing.  It's worked out once, and then kept until the
+     * list or one of its elements changes.
      * 
      * @return a <code>String</code> value
      */
     public String getStringRep() {
-        int sz = val.size();
-	if(sz == 0) {
+	Rep r = rep;
+	if (r != null && r.valid) {
+	    return r.str;
+	}
+	String str = buildStringRep();
+	rep = Rep.make(str, this);
+	return str;
+    }
+
+    private String buildStringRep() {
+	if(count == 0) {
 	    return "";
 	    //return "{}";
 	}
 
-/* 	if(depth > 1) {
-	    //throw new HeclException("Can't print circular references");
-	    return "CIRCULAR REF! BANG!";
-	} else {
-	    depth ++;
-	}  */
-
-
-	int i = 0;
-//#ifdef notdef
-	int[] flags = new int[sz];
-	for(i=0; i<sz; ++i) {
-	    Thing elem = (Thing)val.elementAt(i);
-	    flags[i] = scanElement(elem);
-	}
-//#endif
         StringBuffer resbuf = new StringBuffer();
-	for (i=0; i < sz; ++i) {
-	    if(i > 0)
+	int end = offset + count;
+	for (int i = offset; i < end; ++i) {
+	    if(i > offset)
 		resbuf.append(' ');
-	    //resbuf.append(toListString((Thing)val.elementAt(i)));
-	    appendListItem(resbuf,(Thing)val.elementAt(i));
+	    appendListItem(resbuf,items[i]);
 	}
         return resbuf.toString();
     }
 
+    /**
+     * A <code>Rep</code> is a cached string representation.  The list
+     * drops it when it changes itself, but its elements can be
+     * changed in place without the list knowing.  So each element,
+     * and the string, list or hash it holds, points back to the Rep
+     * with its <code>cachedin</code> field, and drops it when it
+     * changes.  That makes the list that owns the Rep drop the Rep
+     * of the list it's in, and so on up.  An element only points to
+     * one Rep, so if it's put in the Rep of a second list, the first
+     * one's Rep is dropped.  Numbers never change, and anything else,
+     * such as an object, might change at any time, so a list holding
+     * one isn't cached.
+     */
+    static final class Rep {
+	final String str;
+	private final ListThing owner;
+	private volatile boolean valid = true;
+
+	private Rep(String str, ListThing owner) {
+	    this.str = str;
+	    this.owner = owner;
+	}
+
+	/* A Rep for the elements of owner, or null if they can't be
+	 * cached. */
+	static Rep make(String str, ListThing owner) {
+	    Thing[] items = owner.items;
+	    int end = owner.offset + owner.count;
+	    for (int i = owner.offset; i < end; i++) {
+		RealThing v = items[i].getVal();
+		if (!(v instanceof StringThing || v instanceof ListThing
+		      || v instanceof HashThing || v instanceof NumberThing)) {
+		    return null;
+		}
+	    }
+	    Rep r = new Rep(str, owner);
+	    for (int i = owner.offset; i < end; i++) {
+		Thing t = items[i];
+		t.cachedin = r.take(t.cachedin);
+		RealThing v = t.getVal();
+		if (v instanceof StringThing) {
+		    StringThing s = (StringThing)v;
+		    s.cachedin = r.take(s.cachedin);
+		} else if (v instanceof ListThing) {
+		    ListThing l = (ListThing)v;
+		    l.cachedin = r.take(l.cachedin);
+		} else if (v instanceof HashThing) {
+		    ((HashThing)v).cacheIn(r);
+		}
+	    }
+	    return r;
+	}
+
+	/* Takes over from old as the Rep something is in. */
+	Rep take(Rep old) {
+	    if (old != null && old != this) {
+		old.invalidate();
+	    }
+	    return this;
+	}
+
+	/* Drops r, if there is one, and returns null. */
+	static Rep drop(Rep r) {
+	    if (r != null) {
+		r.invalidate();
+	    }
+	    return null;
+	}
+
+	private void invalidate() {
+	    if (valid) {
+		valid = false;
+		if (owner.rep == this) {
+		    owner.dropRep();
+		}
+	    }
+	}
+    }
+
     /**
      * The <code>stringSplit</code> method takes a string and splits
      * it according to another string,
@@ -352,10 +664,10 @@ public class ListThing implements RealThing {
      * @exception HeclException if an error occurs
      */
     public static Thing buildCmdList(Thing cmd, Thing[] args) throws HeclException {
-	Vector v = ListThing.get(cmd.deepcopy());
+	ListThing l = getList(cmd.lazycopy());
 	for(int i = 0; i < args.length; i++) {
-	    v.addElement(args[i]);
+	    l.addElement(args[i]);
 	}
-	return ListThing.create(v);
+	return new Thing(l);
     }
 }
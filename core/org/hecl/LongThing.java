@@ -20,7 +20,7 @@ package org.hecl;
  *
  * @version 1.0
  */
-public class LongThing extends FractionalThing {
+public class LongThing extends IntegralThing {
     /* The internal value. */
     private long val;
 
@@ -38,6 +38,7 @@ public class LongThing extends FractionalThing {
      * @param l a <code>long</code> value
      */
     public LongThing(long l) {
+	super(LONG);
 	set(l);
     }
 
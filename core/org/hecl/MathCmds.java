@@ -98,19 +98,29 @@ public class MathCmds extends org.hecl.Operator {
     }
 
     public static int compare(NumberThing a,NumberThing b) {
-//#if javaversion >= 1.5 || cldc > 1.0
-	if(a.isIntegral() && b.isIntegral()) {
-//#endif
-	    if(((IntegralThing)a).isLong() || ((IntegralThing)b).isLong()) {
-		return compare(a.longValue(),b.longValue());
-	    }
+	switch(widest(a,b)) {
+	  case NumberThing.INT:
 	    return compare(a.intValue(),b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
+	  case NumberThing.LONG:
+	    return compare(a.longValue(),b.longValue());
+//#if javaversion >= 1.5
+	  case NumberThing.BIG:
+	    return BigThing.toBig(a).compareTo(BigThing.toBig(b));
+//#endif
 	}
+//#if javaversion >= 1.5 || cldc > 1.0
 	return compare(a.doubleValue(),b.doubleValue());
+//#else
+	return 0;
 //#endif
     }
 
+    /* The kind of math to do on a and b, which is the wider of
+     * their two kinds: int, long or double. */
+    private static int widest(NumberThing a,NumberThing b) {
+	return a.numtype > b.numtype ? a.numtype : b.numtype;
+    }
+
     public static Thing unary(int cmdcode,Interp ip,NumberThing a)
 	throws HeclException {
 	switch(cmdcode) {
@@ -128,16 +138,23 @@ public class MathCmds extends org.hecl.Operator {
 	    return DoubleThing.create(Math.toRadians(a.doubleValue()));
 //#endif
 	  case ABS:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral()) {
+	    switch(a.numtype) {
+	      case NumberThing.INT:
+		return longres(Math.abs((long)a.intValue()));
+	      case NumberThing.LONG:
+		if (a.longValue() == Long.MIN_VALUE) {
+		    return overflow(BINSUB, IntThing.ZERO, a, Long.MIN_VALUE);
+		}
+		return LongThing.create(Math.abs(a.longValue()));
+//#if javaversion >= 1.5
+	      case NumberThing.BIG:
+		return BigThing.create(BigThing.toBig(a).abs());
 //#endif
-		IntegralThing i = (IntegralThing)a;
-		if(i.isLong())
-		    return LongThing.create(Math.abs(i.longValue()));
-		return IntThing.create(Math.abs(i.intValue()));
-//#if javaversion >= 1.5 || cldc > 1.0
 	    }
+//#if javaversion >= 1.5 || cldc > 1.0
 	    return DoubleThing.create(Math.abs(a.doubleValue()));
+//#else
+	    break;
 //#endif
 //#if javaversion >= 1.5 || cldc > 1.0
 	  case SIN:
@@ -214,130 +231,6 @@ public class MathCmds extends org.hecl.Operator {
 	throws HeclException {
 
 	switch(cmdcode) {
-	  case BINADD:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		if(((IntegralThing)a).isLong()
-		   || ((IntegralThing)b).isLong()) {
-		    return LongThing.create(a.longValue()+b.longValue());
-		}
-		return IntThing.create(a.intValue()+b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
-	    }
-	    return DoubleThing.create(a.doubleValue()+b.doubleValue());
-//#endif
-	  case BINSUB:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		if(((IntegralThing)a).isLong()
-		   || ((IntegralThing)b).isLong()) {
-		    return LongThing.create(a.longValue()-b.longValue());
-		}
-		return IntThing.create(a.intValue()-b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
-	    }
-	    return DoubleThing.create(a.doubleValue()-b.doubleValue());
-//#endif
-	  case BINMUL:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		if(((IntegralThing)a).isLong()
-		   || ((IntegralThing)b).isLong()) {
-		    return LongThing.create(a.longValue()*b.longValue());
-		}
-		return IntThing.create(a.intValue()*b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
-	    }
-	    return DoubleThing.create(a.doubleValue()*b.doubleValue());
-//#endif
-	  case BINDIV:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		if(((IntegralThing)a).isLong()
-		   || ((IntegralThing)b).isLong()) {
-		    return LongThing.create(a.longValue()/b.longValue());
-		}
-		return IntThing.create(a.intValue()/b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
-	    }
-	    return DoubleThing.create(a.doubleValue()/b.doubleValue());
-//#endif
-	  case MOD:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		if(((IntegralThing)a).isLong()
-		   || ((IntegralThing)b).isLong()) {
-		    return LongThing.create(a.longValue()%b.longValue());
-		}
-		return IntThing.create(a.intValue()%b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
-	    }
-	    return DoubleThing.create(a.doubleValue()%b.doubleValue());
-//#endif
-
-	    case MIN:
-//#if javaversion >= 1.5 || cldc > 1.0
-		if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		    IntegralThing i = (IntegralThing)a;
-		    IntegralThing j = (IntegralThing)b;
-		    if(i.isLong() && j.isLong()) {
-			return LongThing.create(Math.min(i.longValue(), j.longValue()));
-		    }
-		    return IntThing.create(Math.min(i.intValue(), j.intValue()));
-//#if javaversion >= 1.5 || cldc > 1.0
-		}
-		return DoubleThing.create(Math.min(a.doubleValue(), b.doubleValue()));
-//#endif
-
-	    case MAX:
-//#if javaversion >= 1.5 || cldc > 1.0
-		if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		    IntegralThing i = (IntegralThing)a;
-		    IntegralThing j = (IntegralThing)b;
-		    if(i.isLong() && j.isLong()) {
-			return LongThing.create(Math.max(i.longValue(), j.longValue()));
-		    }
-		    return IntThing.create(Math.max(i.intValue(), j.intValue()));
-//#if javaversion >= 1.5 || cldc > 1.0
-		}
-		return DoubleThing.create(Math.max(a.doubleValue(), b.doubleValue()));
-//#endif
-
-
-	  case AND:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		if(((IntegralThing)a).isLong()
-		   || ((IntegralThing)b).isLong()) {
-		    return LongThing.create(a.longValue() & b.longValue());
-		}
-		return IntThing.create(a.intValue() & b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
-	    }
-	    throw new HeclException("Integral argument required.");
-//#endif
-	  case OR:
-//#if javaversion >= 1.5 || cldc > 1.0
-	    if(a.isIntegral() && b.isIntegral()) {
-//#endif
-		if(((IntegralThing)a).isLong()
-		   || ((IntegralThing)b).isLong()) {
-		    return LongThing.create(a.longValue() | b.longValue());
-		}
-		return IntThing.create(a.intValue() | b.intValue());
-//#if javaversion >= 1.5 || cldc > 1.0
-	    }
-	    throw new HeclException("Integral argument required.");
-//#endif
-
 //#ifdef j2se
 	  case POW:
 	    return DoubleThing.create(Math.pow(a.doubleValue(), b.doubleValue()));
@@ -359,11 +252,154 @@ public class MathCmds extends org.hecl.Operator {
 	  case GE:
 	    return boolres(compare(a,b) >= 0);
 	}
+
+	/* Everything else is +, -, *, /, %, min, max, and or. */
+	switch(widest(a,b)) {
+	  case NumberThing.INT:
+	    return intmath(cmdcode, a.intValue(), b.intValue());
+	  case NumberThing.LONG:
+	    return longmath(cmdcode, a, b);
+//#if javaversion >= 1.5
+	  case NumberThing.BIG:
+	    return BigThing.binary(cmdcode, BigThing.toBig(a), BigThing.toBig(b));
+//#endif
+	}
+//#if javaversion >= 1.5 || cldc > 1.0
+	return doublemath(cmdcode, a.doubleValue(), b.doubleValue());
+//#else
+	throw new HeclException("Unknown binary mathcmdcode '"+cmdcode+"'.");
+//#endif
+    }
+
+    /* Math on two ints.  It's done in longs where it might overflow,
+     * so that the result is exact. */
+    private static Thing intmath(int cmdcode, int a, int b)
+	throws HeclException {
+	switch(cmdcode) {
+	  case BINADD:
+	    return longres((long)a + b);
+	  case BINSUB:
+	    return longres((long)a - b);
+	  case BINMUL:
+	    return longres((long)a * b);
+	  case BINDIV:
+	    return longres((long)a / b);
+	  case MOD:
+	    return IntThing.create(a % b);
+	  case MIN:
+	    return IntThing.create(Math.min(a, b));
+	  case MAX:
+	    return IntThing.create(Math.max(a, b));
+	  case AND:
+	    return IntThing.create(a & b);
+	  case OR:
+	    return IntThing.create(a | b);
+	}
 	throw new HeclException("Unknown binary mathcmdcode '"+cmdcode+"'.");
     }
 
+    /* An int if l fits in one, otherwise a long. */
+    private static Thing longres(long l) {
+	if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+	    return IntThing.create((int)l);
+	}
+	return LongThing.create(l);
+    }
+
+    /* Math on two longs, checking for overflow. */
+    private static Thing longmath(int cmdcode, NumberThing a, NumberThing b)
+	throws HeclException {
+	long x = a.longValue();
+	long y = b.longValue();
+	long r;
+	switch(cmdcode) {
+	  case BINADD:
+	    r = x + y;
+	    if (((x ^ r) & (y ^ r)) < 0) {
+		return overflow(cmdcode, a, b, r);
+	    }
+	    return LongThing.create(r);
+	  case BINSUB:
+	    r = x - y;
+	    if (((x ^ y) & (x ^ r)) < 0) {
+		return overflow(cmdcode, a, b, r);
+	    }
+	    return LongThing.create(r);
+	  case BINMUL:
+	    r = x * y;
+	    if (((Math.abs(x) | Math.abs(y)) >>> 31) != 0
+		&& ((y != 0 && r / y != x)
+		    || (x == Long.MIN_VALUE && y == -1))) {
+		return overflow(cmdcode, a, b, r);
+	    }
+	    return LongThing.create(r);
+	  case BINDIV:
+	    if (x == Long.MIN_VALUE && y == -1) {
+		return overflow(cmdcode, a, b, x);
+	    }
+	    return LongThing.create(x / y);
+	  case MOD:
+	    return LongThing.create(x % y);
+	  case MIN:
+	    return LongThing.create(Math.min(x, y));
+	  case MAX:
+	    return LongThing.create(Math.max(x, y));
+	  case AND:
+	    return LongThing.create(x & y);
+	  case OR:
+	    return LongThing.create(x | y);
+	}
+	throw new HeclException("Unknown binary mathcmdcode '"+cmdcode+"'.");
+    }
+
+    /* Long math that overflowed.  Where there's BigInteger, it's
+     * done again with that, otherwise the result wraps around. */
+    private static Thing overflow(int cmdcode, NumberThing a, NumberThing b,
+				  long wrapped) throws HeclException {
+//#if javaversion >= 1.5
+	return BigThing.binary(cmdcode, BigThing.toBig(a), BigThing.toBig(b));
+//#else
+	return LongThing.create(wrapped);
+//#endif
+    }
+
+//#if javaversion >= 1.5 || cldc > 1.0
+    /* Math on two doubles. */
+    private static Thing doublemath(int cmdcode, double a, double b)
+	throws HeclException {
+	switch(cmdcode) {
+	  case BINADD:
+	    return DoubleThing.create(a + b);
+	  case BINSUB:
+	    return DoubleThing.create(a - b);
+	  case BINMUL:
+	    return DoubleThing.create(a * b);
+	  case BINDIV:
+	    return DoubleThing.create(a / b);
+	  case MOD:
+	    return DoubleThing.create(a % b);
+	  case MIN:
+	    return DoubleThing.create(Math.min(a, b));
+	  case MAX:
+	    return DoubleThing.create(Math.max(a, b));
+	  case AND:
+	  case OR:
+	    throw new HeclException("Integral argument required.");
+	}
+	throw new HeclException("Unknown binary mathcmdcode '"+cmdcode+"'.");
+    }
+//#endif
+
     private static Thing boolres(boolean res) {
-	return new Thing(res ? IntThing.ONE : IntThing.ZERO);
+	return IntThing.create(res);
+    }
+
+    /* Small ints are shared, see IntThing.create. */
+    private static Thing numres(NumberThing num) {
+	if (num instanceof IntThing) {
+	    return IntThing.create(num.intValue());
+	}
+	return new Thing(num);
     }
     
     public Thing operate(int cmdcode,Interp ip,Thing[] argv)
@@ -381,31 +417,31 @@ public class MathCmds extends org.hecl.Operator {
 	  case PLUS:
 	    num = IntThing.ZERO;
 	    for(int i=1; i<argv.length; ++i) {
-		num = (NumberThing)binary(BINADD, ip, num,
-					  NumberThing.asNumber(argv[i])).getVal();
+		num = NumberThing.asNumber(binary(BINADD, ip, num,
+					  NumberThing.asNumber(argv[i])));
 	    }
-	    return new Thing(num);
+	    return numres(num);
 	  case MINUS:
 	    switch(argv.length) {
 	      case 1:
-		return new Thing(IntThing.ZERO);
+		return IntThing.create(0);
 	      case 2:
 		return binary(BINSUB,ip,IntThing.ZERO,NumberThing.asNumber(argv[1]));
 	      default:
 		num = NumberThing.asNumber(argv[1]);
 		for(int i=2; i<argv.length; ++i) {
-		    num = (NumberThing)binary(BINSUB,ip, num,
-					      NumberThing.asNumber(argv[i])).getVal();
+		    num = NumberThing.asNumber(binary(BINSUB,ip, num,
+					      NumberThing.asNumber(argv[i])));
 		}
-		return new Thing(num);
+		return numres(num);
 	    }
 	  case MUL:
 	    num = IntThing.ONE;
 	    for(int i=1; i<argv.length; ++i) {
-		num = (NumberThing)binary(BINMUL,ip,num,
-					  NumberThing.asNumber(argv[i])).getVal();
+		num = NumberThing.asNumber(binary(BINMUL,ip,num,
+					  NumberThing.asNumber(argv[i])));
 	    }
-	    return new Thing(num);
+	    return numres(num);
 //#ifdef j2se
 	  case RANDOM:
 	    return DoubleThing.create(Math.random());
@@ -414,38 +450,37 @@ public class MathCmds extends org.hecl.Operator {
 		return DoubleThing.create(new java.util.Random().nextDouble());
 //#endif
 	  case TRUE:
-	    return new Thing(IntThing.ONE);
+	    return IntThing.create(1);
 	  case FALSE:
-	    return new Thing(IntThing.ZERO);
+	    return IntThing.create(0);
 	  case AND:
 	    num = NumberThing.asNumber(argv[1]);
 	    for(int i=2; i<argv.length; ++i) {
-		num = (NumberThing)binary(AND,ip,num,
-					  NumberThing.asNumber(argv[i])).getVal();
+		num = NumberThing.asNumber(binary(AND,ip,num,
+					  NumberThing.asNumber(argv[i])));
 	    }
-	    return new Thing(num);
+	    return numres(num);
 	  case OR:
 	    num = NumberThing.asNumber(argv[1]);
 	    for(int i=2; i<argv.length; ++i) {
-		num = (NumberThing)binary(OR,ip,num,
-					  NumberThing.asNumber(argv[i])).getVal();
+		num = NumberThing.asNumber(binary(OR,ip,num,
+					  NumberThing.asNumber(argv[i])));
 	    }
-	    return new Thing(num);
+	    return numres(num);
 	  case INCR:
 	      num = NumberThing.asNumber(argv[1]);
-	      if(!num.isIntegral()) {
+	      if(num.numtype == NumberThing.DOUBLE) {
 		  throw new HeclException("Argument '" + argv[1].toString()
 					  + "' not an integer.");
 	      }
 	      NumberThing offset = argv.length > 2 ?
 		  NumberThing.asNumber(argv[2]) : IntThing.ONE;
-	      if(((IntegralThing)num).isLong()) {
-		  num = new LongThing(num.longValue() + offset.longValue());
-	      } else {
-		  num = new IntThing(num.intValue() + offset.intValue());
+	      if(offset.numtype == NumberThing.DOUBLE) {
+		  offset = new LongThing(offset.longValue());
 	      }
+	      num = NumberThing.asNumber(binary(BINADD, ip, num, offset));
 	      argv[1].setCopyVal(num);
-	      return new Thing(num);
+	      return numres(num);
 	  default:
 	    /*
 	    Command c = extensions.get(cmdcode);
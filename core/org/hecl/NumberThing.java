@@ -26,6 +26,20 @@ import java.util.Hashtable;
  * @version 1.0
  */
 public abstract class NumberThing implements RealThing {
+    /* The kinds of number, in order of width.  Math on two numbers
+     * is done in the wider of their kinds. */
+    public static final int INT = 0;
+    public static final int LONG = 1;
+    public static final int BIG = 2;
+    public static final int DOUBLE = 3;
+
+    /* Which kind of number this is. */
+    public final int numtype;
+
+    protected NumberThing(int numtype) {
+	this.numtype = numtype;
+    }
+
     // Satisfy RealThing...
     public abstract RealThing deepcopy() throws HeclException;
     public abstract String getStringRep();
@@ -125,8 +139,9 @@ public abstract class NumberThing implements RealThing {
 
     /**
      * <code>asNumber</code> attempts to transform Thing t into a
-     * number of some sort.  It first tries to get an int from t, then
-     * a long, and finally a double.
+     * number of some sort: an int if it fits, then a long, then a
+     * BigThing where there is one, and finally a double.  The number is kept in t, as long as it
+     * prints the same way t did, so that "007" stays "007".
      *
      * @param t a <code>Thing</code> value
      * @return a <code>NumberThing</code> value
@@ -135,24 +150,99 @@ public abstract class NumberThing implements RealThing {
      */
     public static NumberThing asNumber(Thing t)
 	throws NumberFormatException {
-	if(isNumber(t))
-	    return (NumberThing)(t.getVal());
+	RealThing rt = t.getVal();
+	if(rt instanceof NumberThing)
+	    return (NumberThing)rt;
 	String s = t.toString();
-	try {
-	    return new IntThing(s);
+	NumberThing num = parseIntegral(s);
+	if (num != null) {
+	    if (plainIntegral(s)) {
+		t.setVal(num);
+	    }
+	    return num;
 	}
-	catch(NumberFormatException ne) {
+//#if javaversion >= 1.5
+	num = BigThing.parse(s);
+	if (num != null) {
+	    if (plainIntegral(s)) {
+		t.setVal(num);
+	    }
+	    return num;
+	}
+//#endif
+	/* Not a whole number, so it's a double, or not a number at
+	 * all. */
 //#if cldc == 1.0
-	    return new LongThing(s);
+	return new LongThing(s);
 //#else
-	    try {
-		return new LongThing(s);
+	num = new DoubleThing(s);
+	if (num.getStringRep().equals(s)) {
+	    t.setVal(num);
+	}
+	return num;
+//#endif
+    }
+
+    /**
+     * <code>parseIntegral</code> parses a whole number, the same way
+     * Integer.parseInt and Long.parseLong do, but returns null rather
+     * than throwing an exception if it isn't one, or doesn't fit in
+     * a long.
+     *
+     * @param s a <code>String</code> value
+     * @return an <code>IntThing</code>, <code>LongThing</code> or null
+     */
+    static NumberThing parseIntegral(String s) {
+	int len = s.length();
+	int i = 0;
+	boolean neg = false;
+	if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+	    neg = s.charAt(0) == '-';
+	    i = 1;
+	}
+	if (i == len) {
+	    return null;
+	}
+	/* Worked out as a negative number, which has the larger
+	 * range. */
+	long limit = neg ? Long.MIN_VALUE : -Long.MAX_VALUE;
+	long multmin = limit / 10;
+	long val = 0;
+	for (; i < len; i++) {
+	    int d = Character.digit(s.charAt(i), 10);
+	    if (d < 0 || val < multmin) {
+		return null;
 	    }
-	    catch(NumberFormatException ne2) {
-		return new DoubleThing(s);
+	    val *= 10;
+	    if (val < limit + d) {
+		return null;
+	    }
+	    val -= d;
+	}
+	if (!neg) {
+	    val = -val;
+	}
+	if (val >= Integer.MIN_VALUE && val <= Integer.MAX_VALUE) {
+	    return new IntThing((int)val);
+	}
+	return new LongThing(val);
+    }
+
+    /* True if s, which parseIntegral has accepted, is written the
+     * way the number prints: no '+', and no leading zeroes. */
+    private static boolean plainIntegral(String s) {
+	int len = s.length();
+	int i = s.charAt(0) == '-' ? 1 : 0;
+	if (s.charAt(i) == '0') {
+	    return len == 1;
+	}
+	for (; i < len; i++) {
+	    char c = s.charAt(i);
+	    if (c < '0' || c > '9') {
+		return false;
 	    }
-//#endif
 	}
+	return true;
     }
 
     /**
@@ -22,6 +22,11 @@ import java.util.Hashtable;
  * that are used in the creation of groups of commands, such as those
  * found in InterpCmds, ListCmds, and so on.
  *
+ * The <code>argv</code> array passed to an Operator is reused by the
+ * interpreter once the command returns, and extensions that subclass
+ * Operator must not keep a reference to it, for instance in a field
+ * or in a task or thread that runs later.  See Command.cmdCode.
+ *
  * @author <a href="mailto:davidw@dedasys.com">David N. Welton</a>
  * @version 1.0
  */
@@ -82,6 +87,8 @@ public abstract class Operator implements Command {
 
     /**
      * The <code>operate</code> method dispatches to the actual code.
+     * The <code>argv</code> array is reused once it returns, so it
+     * must not be kept - the Things in it may be.
      *
      * @param cmdcode an <code>int</code> value
      * @param interp an <code>Interp</code> value
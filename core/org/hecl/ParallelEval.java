@@ -0,0 +1,185 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+/**
+ * The <code>ParallelEval</code> class runs a piece of code for each
+ * element of a list, like <code>lmap</code> and <code>filter</code>
+ * do, but splits the list up between several threads.  Each thread
+ * gets its own fork of the interpreter (see Interp.takeFork), so the
+ * code sees the global variables and procs as they were when it
+ * started, but not local variables, and anything it changes is thrown
+ * away afterwards.  The code should therefore not have side effects.
+ * The forks are kept by the interpreter and used again by the next
+ * call.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+class ParallelEval extends Thread {
+    /* Lists shorter than this aren't worth splitting up. */
+    static final int THRESHOLD = 1000;
+
+    private Interp interp;
+    private String varname;
+    private Thing code;
+    private Thing[] items;
+    private Thing[] values;
+    private Thing[] results;
+    private boolean filter;
+    private int lo;
+    private int hi;
+
+    /* The first error, which stops all the threads. */
+    private ParallelEval group;
+    private HeclException error = null;
+    private volatile boolean failed = false;
+
+    private ParallelEval(ParallelEval group, Interp interp, String varname,
+			 Thing code, Thing[] items, Thing[] values,
+			 Thing[] results, boolean filter, int lo, int hi) {
+	this.group = group == null ? this : group;
+	this.interp = interp;
+	this.varname = varname;
+	this.code = code;
+	this.items = items;
+	this.values = values;
+	this.results = results;
+	this.filter = filter;
+	this.lo = lo;
+	this.hi = hi;
+    }
+
+    /**
+     * The <code>processors</code> method returns the number of
+     * threads worth running at once.  It's always 1 in J2ME.
+     *
+     * @return an <code>int</code> value
+     */
+    static int processors() {
+//#if j2se || android
+	return Runtime.getRuntime().availableProcessors();
+//#else
+	return 1;
+//#endif
+    }
+
+    /**
+     * The <code>eval</code> method evaluates <code>code</code> with
+     * <code>varname</code> set to each of <code>items</code>, in
+     * forks of <code>interp</code>.  It returns the results of the
+     * code, or, if <code>filter</code> is set, the items for which
+     * the code returned true and null for the others.
+     *
+     * @param interp an <code>Interp</code> value
+     * @param varname a <code>String</code> value
+     * @param code a <code>Thing</code> value
+     * @param items a <code>Thing[]</code> value
+     * @param filter a <code>boolean</code> value
+     * @return a <code>Thing[]</code> value
+     * @exception HeclException if the code fails for any item
+     */
+    static Thing[] eval(Interp interp, String varname, Thing code,
+			Thing[] items, boolean filter) throws HeclException {
+	int n = items.length;
+	int nthreads = Math.min(processors(), (n + THRESHOLD - 1) / THRESHOLD);
+	if (nthreads < 1) {
+	    nthreads = 1;
+	}
+	Thing[] results = new Thing[n];
+
+	/* The code sees copies of the items, so that nothing it does
+	 * to them, even converting one to another type, touches Things
+	 * that other threads can see. */
+	Thing[] values = new Thing[n];
+	for (int i = 0; i < n; i++) {
+	    values[i] = items[i].lazycopy();
+	}
+
+	/* The code is parsed once.  Each fork runs its own copy,
+	 * because running code caches things in it. */
+	CodeThing parsed = CodeThing.get(interp, code);
+
+	ParallelEval[] workers = new ParallelEval[nthreads];
+	ParallelEval group = null;
+	try {
+	    for (int i = 0; i < nthreads; i++) {
+		workers[i] = new ParallelEval(group, interp.takeFork(), varname,
+					      new Thing(parsed.deepcopy()),
+					      items, values, results, filter,
+					      n * i / nthreads,
+					      n * (i + 1) / nthreads);
+		group = workers[0];
+	    }
+
+	    /* The calling thread does the last part itself. */
+	    for (int i = 0; i < nthreads - 1; i++) {
+		workers[i].start();
+	    }
+	    workers[nthreads - 1].run();
+	    /* The forks can't be given back while they're in use. */
+	    for (int i = 0; i < nthreads - 1; i++) {
+		while (workers[i].isAlive()) {
+		    try {
+			workers[i].join();
+		    } catch (InterruptedException e) {
+			group.fail(new HeclException("Interrupted waiting for threads"));
+		    }
+		}
+	    }
+	} finally {
+	    for (int i = 0; i < nthreads; i++) {
+		if (workers[i] != null) {
+		    interp.giveFork(workers[i].interp);
+		}
+	    }
+	}
+	if (group.error != null) {
+	    throw group.error;
+	}
+	return results;
+    }
+
+    public void run() {
+	interp.setOwner(Thread.currentThread());
+	try {
+	    for (int i = lo; i < hi && !group.failed; i++) {
+		interp.setVar(varname, values[i]);
+		Thing res = interp.eval(code);
+		if (filter) {
+		    if (IntThing.get(res) != 0) {
+			results[i] = items[i];
+		    }
+		} else {
+		    results[i] = res;
+		}
+	    }
+	} catch (HeclException he) {
+	    group.fail(he);
+	} catch (RuntimeException e) {
+	    group.fail(new HeclException(e.toString()));
+	} finally {
+	    interp.setOwner(null);
+	}
+    }
+
+    private synchronized void fail(HeclException he) {
+	if (error == null) {
+	    error = he;
+	}
+	failed = true;
+    }
+}
@@ -30,13 +30,13 @@ class Proc implements Command {
     private String[] argnames;
     /** # of arguments to procedure, negative for varargs */
     private int argcount;
-
-    /**
-     * <code>refcount</code> is used to ensure that, if we recurse
-     * into this proc, that when we leave it, the cache version is
-     * bumped.
-     */
-    private int refcount = 0;
+    /** Slots of the proc's variables, arguments first */
+    private SlotLayout layout;
+    /** Slot of each argument, or -1 if there are too many */
+    private int[] argslots;
+    /** The interpreter that runs this copy of the code.  Others
+     * run their own copy, see Interp.ownProc. */
+    private volatile Interp owner = null;
 
      /**
      * Creates a new <code>Proc</code> instance, with the variable names in
@@ -57,6 +57,35 @@ class Proc implements Command {
 	    this.argnames[i] = ((Thing)varnames.elementAt(i)).toString();
 	}
 	this.argcount = (argc > 0 && this.argnames[argc-1].equals(VARARGVARNAME)) ? -argc : argc;
+	this.layout = new SlotLayout(this.argnames);
+	this.argslots = new int[argc];
+	for(int i=0; i<argc; ++i) {
+	    this.argslots[i] = this.layout.find(this.argnames[i]);
+	}
+    }
+
+    /* A copy of from, with its own copy of the code, for interp.
+     * See Interp.ownProc. */
+    private Proc(Proc from, Interp interp) throws HeclException {
+	this.code = from.code.deepcopy();
+	this.owner = interp;
+	this.argnames = from.argnames;
+	this.argcount = from.argcount;
+	this.layout = from.layout;
+	this.argslots = from.argslots;
+    }
+
+    /**
+     * The <code>copy</code> method returns a Proc that does the same
+     * as this one, but doesn't share any parsed code with it, to be
+     * run by <code>interp</code>.
+     *
+     * @param interp an <code>Interp</code> value
+     * @return a <code>Proc</code> value
+     * @exception HeclException if an error occurs
+     */
+    Proc copy(Interp interp) throws HeclException {
+	return new Proc(this, interp);
     }
 
     /** The name for the varargs parameter - must occur in last position of
@@ -65,6 +94,23 @@ class Proc implements Command {
     private static final String VARARGVARNAME = "args";
 
     public Thing cmdCode(Interp interp, Thing[] argv) throws HeclException {
+	/* The first interpreter to run the proc keeps it, any others
+	 * run their own copy. */
+	Interp o = owner;
+	if (o != interp) {
+	    if (o == null) {
+		synchronized (this) {
+		    if (owner == null) {
+			owner = interp;
+		    }
+		    o = owner;
+		}
+	    }
+	    if (o != interp) {
+		return interp.ownProc(this).cmdCode(interp, argv);
+	    }
+	}
+
 	Vector vargvals = null;
 
         /* Create the argument variables. */
@@ -84,24 +130,31 @@ class Proc implements Command {
 	if (i > argc && vargvals == null)
 	    throw new HeclException("proc " + argv[0]
 				    + " has too many arguments");
-        /* Push a new frame onto the stack. */
-        interp.stackIncr();
-	refcount ++;
-	try {
-	    /* Set the variables from argv.  Add one to argv, because
-	     * argv0 is the name of the proc itself. */
-	    for (i = 0; i < argc; i++) {
-		//System.err.println("set "+this.argnames[i]+"="+argv[i + 1].toString());
-		interp.setVar(this.argnames[i],argv[i + 1]);
+	/* Set the variables from argv.  Add one to argv, because
+	 * argv0 is the name of the proc itself.  The arguments have
+	 * the first slots in the layout. */
+	VarFrame frame = new VarFrame(layout);
+	for (i = 0; i < argc; i++) {
+	    //System.err.println("set "+this.argnames[i]+"="+argv[i + 1].toString());
+	    Thing val = argv[i + 1];
+	    /* Same as Interp.setVar - don't let literals get
+	     * modified. */
+	    if (val.isLiteral()) {
+		val = val.lazycopy();
 	    }
+	    setArg(frame, i, val);
+	}
 
-	    /* Hoover up anything left over as varargs. */
-	    for (; i < argv.length - 1; i++ ) {
-		vargvals.addElement(argv[i + 1]);
-	    }
-	    if(vargvals != null)
-		interp.setVar(VARARGVARNAME, ListThing.create(vargvals));
+	/* Hoover up anything left over as varargs. */
+	for (; i < argv.length - 1; i++ ) {
+	    vargvals.addElement(argv[i + 1]);
+	}
+	if(vargvals != null)
+	    setArg(frame, argc, ListThing.create(vargvals));
 
+        /* Push the new frame onto the stack. */
+        interp.stackPush(frame);
+	try {
 	    /* We actually run the code here. */
 	    Thing res = null;
 	    try {
@@ -111,19 +164,26 @@ class Proc implements Command {
 		    throw e;
 		} else {
 		    res = e.value;
+		    /* Don't keep the value alive in the interp's return
+		     * signal. */
+		    e.value = null;
 		}
 	    }
 	    return res;
 	}
 	finally {
 	    /* We're done, pop the stack. */
-	    refcount --;
-	    if (refcount > 0) {
-		interp.cacheversion ++;
-	    }
 	    interp.stackDecr();
 	}
     }
+    private void setArg(VarFrame frame, int i, Thing val) {
+	if (argslots[i] >= 0) {
+	    frame.setSlot(argslots[i], val);
+	} else {
+	    frame.put(argnames[i], val);
+	}
+    }
+
     /**
      * <code>getCode</code> returns the proc's code.
      *
@@ -0,0 +1,248 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * The <code>Profiler</code> class records where the time goes in a
+ * script.  While it's running (see Interp.startProfiler), every
+ * command and proc that's invoked is counted, along with the time
+ * spent in it - inclusive, including the commands it calls, and
+ * exclusive, not including them - and, where the JVM can tell, the
+ * number of bytes allocated.  Times are in nanoseconds, but only as
+ * accurate as the clock - milliseconds in J2ME.  When the profiler
+ * isn't running, the interpreter doesn't call it at all.
+ *
+ * The exclusive time of each stack of calls is also recorded, and
+ * can be written out in the "folded" format that flame graph tools
+ * read.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class Profiler {
+    /* Name -> Entry. */
+    private Hashtable entries = new Hashtable();
+
+    /* Stack of calls, "a;b;c" -> long[] {exclusive time}. */
+    private Hashtable folded = new Hashtable();
+
+    /* The calls that are running now. */
+    private int depth = 0;
+    private Entry[] stack = new Entry[32];
+    private String[] paths = new String[32];
+    private long[] starts = new long[32];
+    private long[] childtime = new long[32];
+    private long[] startalloc = new long[32];
+    private long[] childalloc = new long[32];
+
+//#ifdef j2se
+    private static final com.sun.management.ThreadMXBean threadbean =
+	findThreadBean();
+
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+	try {
+	    Object bean = java.lang.management.ManagementFactory.getThreadMXBean();
+	    if (bean instanceof com.sun.management.ThreadMXBean) {
+		com.sun.management.ThreadMXBean tb =
+		    (com.sun.management.ThreadMXBean)bean;
+		if (tb.isThreadAllocatedMemorySupported()) {
+		    tb.setThreadAllocatedMemoryEnabled(true);
+		    return tb;
+		}
+	    }
+	} catch (Throwable t) {
+	    /* No allocation counts, then. */
+	}
+	return null;
+    }
+//#endif
+
+    /* Totals for one command or proc. */
+    private static class Entry {
+	String name;
+	boolean proc;
+	long calls = 0;
+	long inclusive = 0;
+	long exclusive = 0;
+	long allocated = 0;
+	/* How many calls to it are running, so that recursive calls
+	 * aren't counted more than once in the inclusive time. */
+	int active = 0;
+
+	Entry(String name, boolean proc) {
+	    this.name = name;
+	    this.proc = proc;
+	}
+    }
+
+    private static long now() {
+//#if javaversion >= 1.5
+	return System.nanoTime();
+//#else
+	return System.currentTimeMillis() * 1000000L;
+//#endif
+    }
+
+    /* Bytes allocated so far by this thread, or 0 if that can't be
+     * told. */
+    static long allocated() {
+//#ifdef j2se
+	if (threadbean != null) {
+	    return threadbean.getThreadAllocatedBytes(
+		Thread.currentThread().getId());
+	}
+//#endif
+	return 0;
+    }
+
+    /**
+     * The <code>enter</code> method is called by Stanza.invoke just
+     * before a command is run.
+     *
+     * @param cmd the <code>Thing</code> naming the command
+     * @param proc whether the command is a proc
+     */
+    void enter(Thing cmd, boolean proc) {
+	String name = name(cmd);
+	Entry e = (Entry)entries.get(name);
+	if (e == null) {
+	    e = new Entry(name, proc);
+	    entries.put(name, e);
+	}
+	e.calls++;
+	e.active++;
+
+	if (depth == stack.length) {
+	    grow();
+	}
+	stack[depth] = e;
+	paths[depth] = depth == 0 ? name : paths[depth - 1] + ";" + name;
+	childtime[depth] = 0;
+	childalloc[depth] = 0;
+	startalloc[depth] = allocated();
+	depth++;
+	/* Last, so that the profiler's own work isn't counted. */
+	starts[depth - 1] = now();
+    }
+
+    /* The name to record a command under.  Commands that are
+     * objects are recorded under their class. */
+    static String name(Thing cmd) {
+	RealThing rt = cmd.getVal();
+	return rt instanceof ObjectThing ?
+	    ((ObjectThing)rt).get().getClass().getName() : cmd.toString();
+    }
+
+    /**
+     * The <code>exit</code> method is called by Stanza.invoke when
+     * the command entered last has returned, or thrown an exception.
+     *
+     */
+    void exit() {
+	long end = now();
+	if (depth == 0) {
+	    return;
+	}
+	depth--;
+	Entry e = stack[depth];
+	stack[depth] = null;
+	long incl = end - starts[depth];
+	long alloc = allocated() - startalloc[depth];
+	long excl = incl - childtime[depth];
+
+	e.active--;
+	if (e.active == 0) {
+	    e.inclusive += incl;
+	}
+	e.exclusive += excl;
+	e.allocated += alloc - childalloc[depth];
+	if (depth > 0) {
+	    childtime[depth - 1] += incl;
+	    childalloc[depth - 1] += alloc;
+	}
+
+	long[] f = (long[])folded.get(paths[depth]);
+	if (f == null) {
+	    f = new long[1];
+	    folded.put(paths[depth], f);
+	}
+	f[0] += excl;
+    }
+
+    private void grow() {
+	int n = stack.length * 2;
+	Entry[] newstack = new Entry[n];
+	System.arraycopy(stack, 0, newstack, 0, depth);
+	stack = newstack;
+	String[] newpaths = new String[n];
+	System.arraycopy(paths, 0, newpaths, 0, depth);
+	paths = newpaths;
+	starts = growLongs(starts, n);
+	childtime = growLongs(childtime, n);
+	startalloc = growLongs(startalloc, n);
+	childalloc = growLongs(childalloc, n);
+    }
+
+    private long[] growLongs(long[] a, int n) {
+	long[] res = new long[n];
+	System.arraycopy(a, 0, res, 0, depth);
+	return res;
+    }
+
+    /**
+     * The <code>results</code> method returns what has been recorded,
+     * as a Hashtable from command name to a hash (as a Thing) with
+     * the keys: type, "proc" or "command"; calls; inclusive and
+     * exclusive, in nanoseconds; and allocated, in bytes.
+     *
+     * @return a <code>Hashtable</code> value
+     */
+    public Hashtable results() {
+	Hashtable res = new Hashtable();
+	for (Enumeration en = entries.elements(); en.hasMoreElements();) {
+	    Entry e = (Entry)en.nextElement();
+	    Hashtable h = new Hashtable();
+	    h.put("type", new Thing(e.proc ? "proc" : "command"));
+	    h.put("calls", LongThing.create(e.calls));
+	    h.put("inclusive", LongThing.create(e.inclusive));
+	    h.put("exclusive", LongThing.create(e.exclusive));
+	    h.put("allocated", LongThing.create(e.allocated));
+	    res.put(e.name, new Thing(new HashThing(h)));
+	}
+	return res;
+    }
+
+    /**
+     * The <code>folded</code> method returns the exclusive time, in
+     * nanoseconds, of each stack of calls, one per line, like so:
+     * <code>proc1;proc2;cmd 12345</code>.  This is the format that
+     * flamegraph.pl and similar tools read.
+     *
+     * @return a <code>String</code> value
+     */
+    public String folded() {
+	StringBuffer sb = new StringBuffer();
+	for (Enumeration en = folded.keys(); en.hasMoreElements();) {
+	    String path = (String)en.nextElement();
+	    sb.append(path).append(' ');
+	    sb.append(((long[])folded.get(path))[0]).append('\n');
+	}
+	return sb.toString();
+    }
+}
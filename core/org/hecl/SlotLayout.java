@@ -0,0 +1,135 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Hashtable;
+
+/**
+ * The <code>SlotLayout</code> class maps the variable names used by a
+ * proc to slots in the <code>Thing[]</code> of its
+ * <code>VarFrame</code>s.  The proc's arguments get the first slots
+ * when the proc is defined, and variables set in the body are added
+ * the first time they are set.  A layout is shared by all calls of
+ * its proc, and only ever grows, so a slot number stays valid once
+ * handed out.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+class SlotLayout {
+    /* Variables beyond this many go in a Hashtable in the frame. */
+    static final int MAXSLOTS = 32;
+
+    /* Variable name -> Slot. */
+    private Hashtable index = new Hashtable();
+
+    /* Slot -> variable name.  Replaced, not modified, when it grows. */
+    private volatile String[] names = new String[0];
+
+    /**
+     * Creates a new <code>SlotLayout</code> instance with slots for
+     * the given names.
+     *
+     * @param argnames a <code>String[]</code> value
+     */
+    SlotLayout(String[] argnames) {
+	for (int i = 0; i < argnames.length; i++) {
+	    add(argnames[i]);
+	}
+    }
+
+    /**
+     * The <code>find</code> method returns the slot for a variable
+     * name, or -1 if it has none.
+     *
+     * @param name a <code>String</code> value
+     * @return an <code>int</code> value
+     */
+    int find(String name) {
+	Slot slot = (Slot)index.get(name);
+	return slot == null ? -1 : slot.index;
+    }
+
+    /**
+     * The <code>getSlot</code> method returns the Slot for a variable
+     * name, or null if it has none.  Unlike the number returned by
+     * <code>find</code>, a Slot can be cached without also keeping
+     * track of which layout it came from.
+     *
+     * @param name a <code>String</code> value
+     * @return a <code>Slot</code> value
+     */
+    Slot getSlot(String name) {
+	return (Slot)index.get(name);
+    }
+
+    /**
+     * The <code>add</code> method returns the slot for a variable
+     * name, adding one if needs be.  If the layout is full, -1 is
+     * returned.
+     *
+     * @param name a <code>String</code> value
+     * @return an <code>int</code> value
+     */
+    synchronized int add(String name) {
+	int i = find(name);
+	if (i >= 0) {
+	    return i;
+	}
+	i = names.length;
+	if (i >= MAXSLOTS) {
+	    return -1;
+	}
+	String[] newnames = new String[i + 1];
+	System.arraycopy(names, 0, newnames, 0, i);
+	newnames[i] = name;
+	names = newnames;
+	index.put(name, new Slot(this, i));
+	return i;
+    }
+
+    /**
+     * The <code>getNames</code> method returns the variable names,
+     * indexed by slot.  The array must not be modified.
+     *
+     * @return a <code>String[]</code> value
+     */
+    String[] getNames() {
+	return names;
+    }
+
+    /**
+     * The <code>size</code> method returns the number of slots.
+     *
+     * @return an <code>int</code> value
+     */
+    int size() {
+	return names.length;
+    }
+
+    /**
+     * A <code>Slot</code> is a slot number in a given layout.
+     */
+    static final class Slot {
+	final SlotLayout layout;
+	final int index;
+
+	Slot(SlotLayout layout, int index) {
+	    this.layout = layout;
+	    this.index = index;
+	}
+    }
+}
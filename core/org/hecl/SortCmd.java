@@ -15,28 +15,59 @@
 
 package org.hecl;
 
-import java.util.*;
-
 /**
  * <code>SortCmd</code> implements the "sort" command.
  *
+ * The sort is a stable merge sort.  The key of each element - its
+ * number or string, or the list element given by "index" - is worked
+ * out once before sorting, rather than in every comparison.  A new
+ * SortCmd is made for each sort to hold its settings, so that several
+ * threads can sort at once.
+ *
  * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
  * @version 1.0
  */
 
 class SortCmd implements Command {
-    //private Properties p = null;
-    private int sortalgorithm = 0;
-    private Thing sortproc = null;
-    private Interp localinterp = null;
+    /* Runs shorter than this are sorted by insertion. */
+    private static final int INSERTIONSORT = 8;
+
+    /* Runs shorter than this are not split between threads. */
+    private static final int PARALLELSORT = 20000;
+
+    private int sortalgorithm;
+    private Thing sortproc;
+    private Interp localinterp;
+    private boolean decreasing;
+
+    /* The keys being compared.  Strings, NumberThings or Things,
+     * depending on sortalgorithm. */
+    private Object[] keys;
+
+    /* The keys as longs, when sorting numbers that are all whole
+     * numbers that fit in a long. */
+    private long[] longkeys;
+
+    SortCmd() {
+    }
+
+    private SortCmd(Interp interp, int sortalgorithm, Thing sortproc,
+		    boolean decreasing) {
+	this.localinterp = interp;
+	this.sortalgorithm = sortalgorithm;
+	this.sortproc = sortproc;
+	this.decreasing = decreasing;
+    }
 
     public Thing cmdCode(Interp interp, Thing[] argv) throws HeclException {
-        Vector v = ListThing.get(argv[1]);
-	localinterp = interp;
-	sortalgorithm = Compare.STRINGCOMPARE;
-	sortproc = null;
+        Thing[] a = ListThing.getArray(argv[1]);
+	int sortalgorithm = Compare.STRINGCOMPARE;
+	Thing sortproc = null;
 
-	Properties p = new Properties(new Object[] {"by", new Thing("string")});
+	Properties p = new Properties(new Object[] {
+	    "by", new Thing("string"),
+	    "decreasing", IntThing.create(false),
+	    "unique", IntThing.create(false)});
 	p.setProps(argv, 2);
 
 	String sortby = ((Thing)p.getProp("by")).toString();
@@ -45,75 +76,261 @@ class SortCmd implements Command {
 	} else if (sortby.equals("proc")) {
 	    sortalgorithm = Compare.PROCCOMPARE;
 	    sortproc = p.getProp("command");
+	    if (sortproc == null) {
+		throw new HeclException("sort by proc needs a command");
+	    }
 	}
+	Thing index = p.getProp("index");
 
-	if (v.size() != 0) {
-	    v = quicksort(v, 0, v.size() - 1);
-	}
-	//p = null;
-        return ListThing.create(v);
+	SortCmd sorter = new SortCmd(interp, sortalgorithm, sortproc,
+				     Thing.isTrue(p.getProp("decreasing")));
+	int n = sorter.sort(a, index, Thing.isTrue(p.getProp("unique")));
+        return new Thing(new ListThing(a, n));
     }
 
-    /* FIXME - speeding this up a bit wouldn't hurt things. */
+    /**
+     * The <code>sort</code> method sorts <code>a</code> in place.
+     * With <code>unique</code>, only the first of each run of equal
+     * elements is kept, and the number of elements left is returned.
+     *
+     * @param a a <code>Thing[]</code> value
+     * @param index the list element to sort by, or null
+     * @param unique a <code>boolean</code> value
+     * @return the number of elements in the result
+     * @exception HeclException if an error occurs
+     */
+    private int sort(Thing[] a, Thing index, boolean unique)
+	throws HeclException {
+	int n = a.length;
+	if (n == 0) {
+	    return 0;
+	}
+
+	/* Decorate. */
+	keys = new Object[n];
+	for (int i = 0; i < n; i++) {
+	    Thing t = a[i];
+	    if (index != null) {
+		ListThing l = ListThing.getList(t);
+		int idx = ListCmds.getIndex(index, l.size());
+		if (idx >= l.size()) {
+		    throw new HeclException("Element '" + t +
+					    "' has no index " + index);
+		}
+		t = l.elementAt(idx);
+	    }
+	    switch (sortalgorithm) {
+	      case Compare.NUMCOMPARE:
+		keys[i] = NumberThing.asNumber(t);
+		break;
+	      case Compare.STRINGCOMPARE:
+		keys[i] = t.toString();
+		break;
+	      default:
+		keys[i] = t;
+		break;
+	    }
+	}
+
+	if (sortalgorithm == Compare.NUMCOMPARE) {
+	    longkeys = new long[n];
+	    for (int i = 0; i < n; i++) {
+		NumberThing num = (NumberThing)keys[i];
+		if (num.numtype > NumberThing.LONG) {
+		    longkeys = null;
+		    break;
+		}
+		longkeys[i] = num.longValue();
+	    }
+	}
+
+	/* Sort the positions of the elements, so that a and keys can
+	 * stay as they are until the end. */
+	int[] order = new int[n];
+	for (int i = 0; i < n; i++) {
+	    order[i] = i;
+	}
+	int[] tmp = new int[n];
+	if (sortalgorithm == Compare.PROCCOMPARE) {
+	    mergesort(order, tmp, 0, n);
+	} else {
+	    /* Comparing keys doesn't touch the interpreter, so big
+	     * sorts can be split between threads. */
+	    parallelsort(order, tmp, 0, n, ParallelEval.processors());
+	}
+
+	/* Undecorate. */
+	Thing[] sorted = new Thing[n];
+	int count = 0;
+	for (int i = 0; i < n; i++) {
+	    if (unique && count > 0 && compare(order[i], order[i - 1]) == 0) {
+		continue;
+	    }
+	    sorted[count++] = a[order[i]];
+	}
+	System.arraycopy(sorted, 0, a, 0, count);
+	for (int i = count; i < n; i++) {
+	    a[i] = null;
+	}
+	keys = null;
+	longkeys = null;
+	return count;
+    }
 
     /**
-     * <code>quicksort</code> implementation.
+     * <code>mergesort</code> sorts order[lo..hi).  Runs that are
+     * already in order are not merged, so sorted input takes linear
+     * time.
      *
-     * @param a a <code>Vector</code> value
+     * @param order an <code>int[]</code> value
+     * @param tmp scratch space, as big as order
      * @param lo an <code>int</code> value
      * @param hi an <code>int</code> value
-     * @return a <code>Vector</code> value
+     * @exception HeclException if an error occurs
      */
-    private Vector quicksort(Vector a, int lo, int hi) throws HeclException {
-        //  lo is the lower index, hi is the upper index
-        //  of the region of array a that is to be sorted
-        int i = lo, j = hi;
-        Thing x = (Thing) a.elementAt((lo + hi) / 2);
-        Thing h;
-
-        //  partition
-        do {
-	    if (sortalgorithm == Compare.NUMCOMPARE) {
-		while (MathCmds.compare((Thing)a.elementAt(i), x) < 0) {
-		    i++;
-		}
-		while (MathCmds.compare((Thing)a.elementAt(j), x) > 0) {
-		    j--;
-		}
-	    } else if (sortalgorithm == Compare.STRINGCOMPARE) {
-		while (Compare.compareString((Thing)a.elementAt(i), x) < 0) {
-		    i++;
-		}
-		while (Compare.compareString((Thing)a.elementAt(j), x) > 0) {
-		    j--;
-		}
-	    } else if (sortalgorithm == Compare.PROCCOMPARE) {
-		int vsz = a.size();
-		while (Compare.compareProc((Thing)a.elementAt(i), x, localinterp, sortproc) < 0 &&
-		       i < vsz) {
-		    i++;
-		}
-		while (Compare.compareProc((Thing)a.elementAt(j), x, localinterp, sortproc) > 0 &&
-		    j > 0) {
+    private void mergesort(int[] order, int[] tmp, int lo, int hi)
+	throws HeclException {
+	if (hi - lo < INSERTIONSORT) {
+	    for (int i = lo + 1; i < hi; i++) {
+		int x = order[i];
+		int j = i;
+		while (j > lo && compare(x, order[j - 1]) < 0) {
+		    order[j] = order[j - 1];
 		    j--;
 		}
+		order[j] = x;
 	    }
+	    return;
+	}
 
-            if (i <= j) {
-                h = (Thing) a.elementAt(i);
-                a.setElementAt(a.elementAt(j), i);
-                a.setElementAt(h, j);
-                i++;
-                j--;
-            }
+	int mid = (lo + hi) >>> 1;
+	mergesort(order, tmp, lo, mid);
+	mergesort(order, tmp, mid, hi);
+	merge(order, tmp, lo, mid, hi);
+    }
 
+    /**
+     * <code>parallelsort</code> is like <code>mergesort</code>, but
+     * sorts the first half in another thread, as long as there are
+     * threads to spare and enough to sort.
+     *
+     * @param order an <code>int[]</code> value
+     * @param tmp scratch space, as big as order
+     * @param lo an <code>int</code> value
+     * @param hi an <code>int</code> value
+     * @param threads the number of threads to use
+     * @exception HeclException if an error occurs
+     */
+    private void parallelsort(int[] order, int[] tmp, int lo, int hi,
+			      int threads) throws HeclException {
+	if (threads < 2 || hi - lo < PARALLELSORT) {
+	    mergesort(order, tmp, lo, hi);
+	    return;
+	}
+	int mid = (lo + hi) >>> 1;
+	Half left = new Half(order, tmp, lo, mid, threads / 2);
+	left.start();
+	parallelsort(order, tmp, mid, hi, threads - threads / 2);
+	try {
+	    left.join();
+	} catch (InterruptedException e) {
+	    throw new HeclException("Interrupted while sorting");
+	}
+	if (left.error != null) {
+	    throw left.error;
+	}
+	merge(order, tmp, lo, mid, hi);
+    }
 
-        } while (i <= j);
+    /**
+     * <code>merge</code> merges the sorted runs order[lo..mid) and
+     * order[mid..hi).
+     *
+     * @param order an <code>int[]</code> value
+     * @param tmp scratch space, as big as order
+     * @param lo an <code>int</code> value
+     * @param mid an <code>int</code> value
+     * @param hi an <code>int</code> value
+     * @exception HeclException if an error occurs
+     */
+    private void merge(int[] order, int[] tmp, int lo, int mid, int hi)
+	throws HeclException {
+	if (compare(order[mid], order[mid - 1]) >= 0) {
+	    return;
+	}
+
+	System.arraycopy(order, lo, tmp, lo, hi - lo);
+	int i = lo;
+	int j = mid;
+	for (int k = lo; k < hi; k++) {
+	    /* Only take from the right half if it's strictly smaller,
+	     * which keeps the sort stable. */
+	    if (i < mid && (j >= hi || compare(tmp[j], tmp[i]) >= 0)) {
+		order[k] = tmp[i++];
+	    } else {
+		order[k] = tmp[j++];
+	    }
+	}
+    }
+
+    /* Sorts half of a parallelsort in its own thread. */
+    class Half extends Thread {
+	private int[] order;
+	private int[] tmp;
+	private int lo;
+	private int hi;
+	private int threads;
+	HeclException error = null;
+
+	Half(int[] order, int[] tmp, int lo, int hi, int threads) {
+	    this.order = order;
+	    this.tmp = tmp;
+	    this.lo = lo;
+	    this.hi = hi;
+	    this.threads = threads;
+	}
+
+	public void run() {
+	    try {
+		parallelsort(order, tmp, lo, hi, threads);
+	    } catch (HeclException he) {
+		error = he;
+	    }
+	}
+    }
 
-        if (lo < j)
-            a = quicksort(a, lo, j);
-        if (i < hi && i > lo)
-            a = quicksort(a, i, hi);
-        return a;
+    /**
+     * <code>compare</code> compares the keys of elements i and j.
+     *
+     * @param i an <code>int</code> value
+     * @param j an <code>int</code> value
+     * @return an <code>int</code> value
+     * @exception HeclException if an error occurs
+     */
+    private int compare(int i, int j) throws HeclException {
+	int res;
+	switch (sortalgorithm) {
+	  case Compare.NUMCOMPARE:
+	    if (longkeys != null) {
+		long a = longkeys[i];
+		long b = longkeys[j];
+		res = a < b ? -1 : (a > b ? 1 : 0);
+	    } else {
+		res = MathCmds.compare((NumberThing)keys[i],
+				       (NumberThing)keys[j]);
+	    }
+	    break;
+	  case Compare.STRINGCOMPARE:
+	    res = ((String)keys[i]).compareTo((String)keys[j]);
+	    break;
+	  default:
+	    res = Compare.compareProc((Thing)keys[i], (Thing)keys[j],
+				      localinterp, sortproc);
+	    break;
+	}
+	if (decreasing) {
+	    return res < 0 ? 1 : (res > 0 ? -1 : 0);
+	}
+	return res;
     }
 }
@@ -30,6 +30,18 @@ class Stanza {
     private Command command = null;
     private Thing[] argv = null;
 
+    /* True if argv[0] is a literal, which doesn't need substituting. */
+    private boolean literalcmd = false;
+
+    /* The command that a literal argv[0] was last looked up as. */
+    private volatile CachedCommand cached = null;
+
+    /* True if this may be "set name value" with a literal name. */
+    private boolean literalset = false;
+
+    /* The slot of that name in the last proc layout it was set in. */
+    private SlotLayout.Slot setslot = null;
+
     /**
      * Creates a new <code>Stanza</code> instance, taking a Command and
      * its arguments as input.
@@ -41,6 +53,12 @@ class Stanza {
 	this.command = newcmd;
 	this.argv = newargv;
 	this.lineno = ln;
+	if (newargv.length > 0 && isLiteralWord(newargv[0])) {
+	    /* Commands that get it as argv[0] mustn't modify it. */
+	    newargv[0].copy = true;
+	    literalcmd = true;
+	}
+	literalset = newargv.length == 3 && isLiteralWord(newargv[1]);
     }
 
 
@@ -55,6 +73,11 @@ class Stanza {
 
 	for (int i = 0; i < this.argv.length; i++) {
 	    destargv[i] = this.argv[i].deepcopy();
+	    /* Literals in the copy mustn't be modified either. */
+	    if (this.argv[i].isLiteral()) {
+		destargv[i].setLiteral();
+	    }
+	    destargv[i].copy = this.argv[i].copy;
 	}
 	return new Stanza(this.command, destargv, this.lineno);
     }
@@ -79,9 +102,11 @@ class Stanza {
     }
     
     /**
-     * The <code>run</code> method runs the Stanza. In order to avoid
-     * creating a new newargv each time, the most common cases are
-     * preallocated.
+     * The <code>run</code> method runs the Stanza, looking up the
+     * command, substituting the rest of its words and then invoking
+     * the command.  Code that is run repeatedly is compiled by
+     * CodeThing, which does the substitutions itself and calls
+     * <code>lookup</code> and <code>invoke</code> directly.
      *
      * @param interp <code>Interp</code> value
      * @return A <code>Thing</code> being the result of the evaluation, or
@@ -91,55 +116,14 @@ class Stanza {
      */
     public Thing run(Interp interp) throws HeclException {
 	RealThing realthing = null;
-	Command tmpcommand = null;
-	ClassCommandInfo info = null;
-	
-	//System.err.println("-->Stanza.run, this="+this);
-	
-	Thing[] newargv = new Thing[this.argv.length];
 
-	/* If we have a CodeThing, GroupThing or SubstThing as
-	 * argv[0], we don't want to save 'command'. */
-	/* FIXME - this could get all messed up by renaming commands. */
-	boolean saveit = false;
+	//System.err.println("-->Stanza.run, this="+this);
 
-	String cmdName = null;
-	newargv[0] = cloneThing(interp,this.argv[0]);
-	if (this.command == null) {
-	    realthing = newargv[0].getVal();
-	    if(realthing instanceof ObjectThing) {
-		info = interp.findClassCmd(((ObjectThing)realthing).get().getClass());
-		if(info != null && argv.length < 1) {
-		    throw new HeclException("Class-command required methodname",this.lineno);
-		}
-	    }
-	    if(info == null)
-		cmdName = newargv[0].toString();
-	    if(cmdName != null) {
-		//System.out.println("cmdname = " + cmdName);
-		tmpcommand = (Command)interp.commands.get(cmdName);
-	    }
-	} else {
-	    /* FIXME - this could get all messed up by renaming commands. */
-	    cmdName = newargv[0].toString();
-	    tmpcommand = this.command;
-	}
-
-	if(tmpcommand == null && info == null) {
-	    throw new HeclException("Command '" + cmdName + "' does not exist",
-				    this.lineno);
-	}
-	
-	/* DEBUG - before. */
-	if (//true
-	    false
-	    ) {
-	    System.out.println("BEFORE COMMAND v");
-	    for (int i = 0; i < argv.length; i ++) {
-		PrintThing.printThing(argv[i]);
-	    }
-	    System.out.println("BEFORE ENDCOMMAND ^ ");
-	}
+	Thing[] newargv = interp.takeArgv(this.argv.length);
+	newargv[0] = literalcmd ? argv[0] : cloneThing(interp,this.argv[0]);
+	/* As in Tcl, a command that doesn't exist is an error before
+	 * any of its arguments are substituted. */
+	Object cmd = lookup(interp, newargv[0]);
 
 	/*
 	 * Fill in the elements of the new argv - doing substitutions and
@@ -164,6 +148,87 @@ class Stanza {
 	    he.setLine(this.lineno);
 	    throw he;
 	}
+	return invoke(interp, newargv, cmd);
+    }
+
+    /**
+     * The <code>lookup</code> method finds the command named by
+     * <code>cmdword</code>, the substituted first word of the
+     * Stanza.  It returns either a <code>Command</code>, or the
+     * <code>ClassCommandInfo</code> of an object, to be passed on to
+     * <code>invoke</code>.
+     *
+     * @param interp <code>Interp</code> value
+     * @param cmdword a <code>Thing</code> value
+     * @return an <code>Object</code> value
+     * @exception HeclException if there is no such command
+     */
+    Object lookup(Interp interp, Thing cmdword) throws HeclException {
+	RealThing realthing = null;
+	Command tmpcommand = null;
+	ClassCommandInfo info = null;
+
+	String cmdName = null;
+	CachedCommand cc = cached;
+	if (cc != null && cc.epoch == interp.cmdepoch) {
+	    return cc.command;
+	} else if (this.command == null) {
+	    realthing = cmdword.getVal();
+	    if(realthing instanceof ObjectThing) {
+		info = interp.findClassCmd(((ObjectThing)realthing).get().getClass());
+		if(info != null && argv.length < 1) {
+		    throw new HeclException("Class-command required methodname",this.lineno);
+		}
+	    }
+	    if(info == null)
+		cmdName = cmdword.toString();
+	    if(cmdName != null) {
+		//System.out.println("cmdname = " + cmdName);
+		/* Read the epoch first - if the table changes in the
+		 * meantime, the cached command is simply stale. */
+		int epoch = interp.cmdepoch;
+		tmpcommand = (Command)interp.commands.get(cmdName);
+		/* The name of a $var, [cmd] or group may be different
+		 * next time around, so only literal names are saved. */
+		if (tmpcommand != null && isLiteralWord(argv[0])) {
+		    cached = new CachedCommand(tmpcommand, epoch);
+		}
+	    }
+	} else {
+	    tmpcommand = this.command;
+	}
+
+	if(tmpcommand == null && info == null) {
+	    throw new HeclException("Command '" + cmdName + "' does not exist",
+				    this.lineno);
+	}
+	return info != null ? (Object)info : tmpcommand;
+    }
+
+    /**
+     * The <code>invoke</code> method calls <code>cmd</code>, as
+     * returned by <code>lookup</code>, with the already substituted
+     * arguments.  <code>newargv</code> should come from
+     * Interp.takeArgv, as it is given back for reuse if the command
+     * is known not to hold on to it.
+     *
+     * @param interp <code>Interp</code> value
+     * @param newargv a <code>Thing[]</code> value
+     * @param cmd a <code>Command</code> or <code>ClassCommandInfo</code>
+     * @return A <code>Thing</code> being the result of the evaluation, or
+     * <code>null</code> if the command didn't return one.
+     *
+     * @exception HeclException if an error occurs
+     */
+    Thing invoke(Interp interp, Thing[] newargv, Object cmd)
+	throws HeclException {
+	Command tmpcommand = null;
+	ClassCommandInfo info = null;
+	if (cmd instanceof ClassCommandInfo) {
+	    info = (ClassCommandInfo)cmd;
+	} else {
+	    tmpcommand = (Command)cmd;
+	}
 
 	/* DEBUG - after. */
 	if (//true
@@ -176,10 +241,28 @@ class Stanza {
 	    System.out.println("AFTER ENDCOMMAND ^ ");
 	}
 
+	/* Built in commands and procs are done with argv when they
+	 * return. */
+	boolean reuse = tmpcommand instanceof Operator
+	    || tmpcommand instanceof Proc;
+
+	/* Costs nothing but this check if it isn't running. */
+	Profiler prof = interp.profiler;
+	if (prof != null) {
+	    prof.enter(newargv[0], tmpcommand instanceof Proc);
+	}
+	AllocStats alloc = AllocStats.on ? interp.allocStats() : null;
+	if (alloc != null) {
+	    alloc.enter();
+	}
+
 	Thing res = null;
 	try {
 	    if(info != null) {
 		res = info.getCommand().method(interp,info,newargv);
+	    } else if (literalset && InterpCmds.isSet(tmpcommand)
+		       && setSlot(interp, newargv[1], newargv[2])) {
+		res = newargv[2];
 	    } else {
 		res = tmpcommand.cmdCode(interp, newargv);
 	    }
@@ -204,14 +287,61 @@ class Stanza {
 	    }
 	    throw new HeclException(msg,this.lineno);
 	} finally {
-	    newargv = null;
+	    if (prof != null) {
+		prof.exit();
+	    }
+	    if (alloc != null) {
+		alloc.exit(newargv[0], interp.currentFile);
+	    }
+	    if (reuse) {
+		interp.giveArgv(newargv);
+	    }
 	}
+	return res;
+    }
 
-	/* Go ahead and save the command. */
-	if (saveit) {
-	    command = tmpcommand;
+    /**
+     * The <code>setSlot</code> method does what the set command does
+     * for a proc variable, by writing its slot directly.  The slot is
+     * only looked up the first time, or when the stanza is run by a
+     * different proc.  It returns false, leaving it to the set
+     * command, if the variable is kept by name - as in the global
+     * frame, or for global references.
+     *
+     * @param interp an <code>Interp</code> value
+     * @param name a <code>Thing</code> value
+     * @param value a <code>Thing</code> value
+     * @return a <code>boolean</code> value
+     * @exception HeclException if an error occurs
+     */
+    private boolean setSlot(Interp interp, Thing name, Thing value)
+	throws HeclException {
+	VarFrame frame = interp.getFrame(-1);
+	SlotLayout layout = frame.layout;
+	if (layout == null) {
+	    return false;
+	}
+	SlotLayout.Slot s = setslot;
+	if (s == null || s.layout != layout) {
+	    String varname = name.toString();
+	    if (layout.find(varname) < 0) {
+		layout.add(varname);
+	    }
+	    s = layout.getSlot(varname);
+	    if (s == null) {
+		return false;
+	    }
+	    setslot = s;
 	}
-	return res != null ? res : Thing.emptyThing();
+	if (frame.getSlot(s.index) == Interp.GLOBALREFTHING) {
+	    return false;
+	}
+	/* Same as Interp.setVar - don't let literals get modified. */
+	if (value.isLiteral()) {
+	    value = value.lazycopy();
+	}
+	frame.setSlot(s.index, value);
+	return true;
     }
 
     /**
@@ -242,4 +372,29 @@ class Stanza {
     public Thing[] getArgv() {
 	return argv;
     }
+
+    int getLineno() {
+	return lineno;
+    }
+
+    private static boolean isLiteralWord(Thing t) {
+	RealThing rt = t.getVal();
+	return !(rt instanceof GroupThing || rt instanceof SubstThing
+		 || (rt instanceof CodeThing && ((CodeThing)rt).marksubst));
+    }
+
+    /**
+     * A <code>CachedCommand</code> is a command, and the epoch of the
+     * command table it was found in.  It's replaced, never modified,
+     * so that it can be read without locking.
+     */
+    static final class CachedCommand {
+	final Command command;
+	final int epoch;
+
+	CachedCommand(Command command, int epoch) {
+	    this.command = command;
+	    this.epoch = epoch;
+	}
+    }
 }
@@ -58,32 +58,24 @@ class StringCmds extends Operator {
 
 
     public Thing operate(int cmd, Interp interp, Thing[] argv) throws HeclException {
+	if (cmd == APPEND) {
+	    /* Done before anything else, so that the string being
+	     * appended to isn't put together for nothing. */
+	    return append(argv);
+	}
+
 	String str = argv[1].toString();
 	StringBuffer sb = null;
 	String s = null;
 	String where = null;
 
 	switch (cmd) {
-	    case APPEND:
-		/* The 'append' command. */
-		Thing result = argv[1];
-
-		sb = new StringBuffer(StringThing.get(result));
-		for (int i = 2; i < argv.length; i++) {
-		    sb.append(argv[i].toString());
-		}
-		StringThing newval = new StringThing(sb);
-		result.setCopyVal(newval);
-		return new Thing(newval);
-
 	    case EQ:
 	      /* 'eq' */
-	      return new Thing(Compare.same(argv[1],argv[2]) ?
-			       IntThing.ONE : IntThing.ZERO);
+	      return IntThing.create(Compare.same(argv[1],argv[2]));
 	    case NEQ:
 	      /* 'ne' */
-	      return new Thing(!Compare.same(argv[1],argv[2]) ?
-			       IntThing.ONE : IntThing.ZERO);
+	      return IntThing.create(!Compare.same(argv[1],argv[2]));
 
 	    case STRBYTELEN:
 		/* strbytelen "string" */
@@ -264,6 +256,35 @@ class StringCmds extends Operator {
 	super(cmdcode, minargs, maxargs);
     }
 
+    /**
+     * The <code>append</code> method implements the 'append'
+     * command.  A string that isn't a literal, or slated for
+     * copying, is appended to in place.  Otherwise, the variable gets
+     * a new string.  Either way, the result shares the string as it
+     * is now, so later appends don't change it.
+     *
+     * @param argv a <code>Thing[]</code> value
+     * @return a <code>Thing</code> value
+     */
+    private static Thing append(Thing[] argv) {
+	Thing result = argv[1];
+	RealThing rt = result.getVal();
+	if (!(rt instanceof StringThing) || result.copy || result.isLiteral()) {
+	    StringThing newval = new StringThing(result.toString());
+	    for (int i = 2; i < argv.length; i++) {
+		newval.append(argv[i].toString());
+	    }
+	    result.setCopyVal(newval);
+	    return new Thing(newval.share());
+	}
+
+	StringThing st = (StringThing)rt;
+	for (int i = 2; i < argv.length; i++) {
+	    st.append(argv[i].toString());
+	}
+	return new Thing(st.share());
+    }
+
     /**
      * The <code>stripr</code> method takes a string, and a Vector of
      * Hecl Things, and strips them off the left side of the string.
@@ -20,11 +20,36 @@ package org.hecl;
  * types. This is somewhat special, as all types in Hecl may be represented as
  * strings.
  *
+ * A StringThing is kept as a String until something is appended to
+ * it.  Appends go to a StringBuffer, which is only turned back into
+ * a String when the whole string is asked for, and that String is
+ * kept until the next append.  Appending to a string over and over
+ * is therefore linear in the final length, however the string is
+ * read.
+ *
+ * A StringThing can share its buffer with another one that is only
+ * as long as the buffer was when it was shared (see share).  The
+ * buffer is only ever appended to, so the shorter one doesn't
+ * change; if it is appended to itself, it takes a copy first.
+ *
  * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
  * @version 1.0
  */
 public class StringThing implements RealThing {
-    private StringBuffer val;
+    /* The whole string, or null if it has been appended to since
+     * the last time it was asked for. */
+    private String str;
+
+    /* Where appends go.  Null until the first append. */
+    private StringBuffer buf = null;
+
+    /* For a StringThing that shares the buffer of the one it was
+     * shared from, its length.  Otherwise -1. */
+    private int len = -1;
+
+    /* The Rep of the list this string is an element of.  See
+     * ListThing.Rep. */
+    ListThing.Rep cachedin = null;
 
     /**
      * Creates a new, empty <code>StringThing</code> instance.
@@ -41,17 +66,19 @@ public class StringThing implements RealThing {
      *            a <code>String</code> value
      */
     public StringThing(String s) {
-        val = s != null ? new StringBuffer(s) : new StringBuffer();
+        str = s != null ? s : "";
     }
 
     /**
      * Creates a new <code>StringThing</code> instance from a stringbuffer.
+     * The stringbuffer belongs to the StringThing from then on.
      *
      * @param sb
      *            a <code>StringBuffer</code> value
      */
     public StringThing(StringBuffer sb) {
-        val = sb;
+        str = null;
+        buf = sb;
     }
 
     public String thingclass() {
@@ -104,7 +131,7 @@ public class StringThing implements RealThing {
      * @return a <code>RealThing</code> value
      */
     public RealThing deepcopy() {
-        return new StringThing(new StringBuffer(val.toString()));
+        return new StringThing(getStringRep());
     }
 
     /**
@@ -113,7 +140,67 @@ public class StringThing implements RealThing {
      * @return a <code>String</code> value
      */
     public String getStringRep() {
-        return val.toString();
+	String s = str;
+	if (s == null) {
+	    if (len < 0) {
+		s = buf.toString();
+	    } else {
+		char[] chars = new char[len];
+		buf.getChars(0, len, chars, 0);
+		s = new String(chars);
+	    }
+	    str = s;
+	}
+        return s;
+    }
+
+    /**
+     * <code>length</code> returns the length of the string, without
+     * putting it together.
+     *
+     * @return an <code>int</code> value
+     */
+    public int length() {
+	String s = str;
+	if (s != null) {
+	    return s.length();
+	}
+	return len < 0 ? buf.length() : len;
+    }
+
+    /**
+     * <code>share</code> returns a StringThing with the string as it
+     * is now, which doesn't change when this one is appended to.  It
+     * shares the buffer rather than copying it.
+     *
+     * @return a <code>StringThing</code> value
+     */
+    public StringThing share() {
+	String s = str;
+	if (s != null) {
+	    return new StringThing(s);
+	}
+	StringThing res = new StringThing(buf);
+	res.len = length();
+	return res;
+    }
+
+    /* The buffer to append to.  The cached string is out of date
+     * once anything is appended. */
+    private StringBuffer appendBuf(int more) {
+	if (len >= 0) {
+	    /* The buffer is shared, so start a new one. */
+	    str = getStringRep();
+	    buf = null;
+	    len = -1;
+	}
+	if (buf == null) {
+	    buf = new StringBuffer(str.length() + more + 16);
+	    buf.append(str);
+	}
+	str = null;
+	cachedin = ListThing.Rep.drop(cachedin);
+	return buf;
     }
 
     /**
@@ -123,7 +210,7 @@ public class StringThing implements RealThing {
      *            a <code>char</code> value
      */
     public void append(char ch) {
-        val.append(ch);
+        appendBuf(1).append(ch);
     }
 
     /**
@@ -133,6 +220,6 @@ public class StringThing implements RealThing {
      *            a <code>String</code> value
      */
     public void append(String str) {
-        val.append(str);
+        appendBuf(str.length()).append(str);
     }
 }
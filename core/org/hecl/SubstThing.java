@@ -25,9 +25,16 @@ package org.hecl;
  * @version 1.0
  */
 public class SubstThing implements RealThing {
-    public long cacheversion = -1;
+    /* The slot of the variable in the last proc frame it was looked
+     * up in. */
+    private SlotLayout.Slot slot = null;
 
-    private Thing val = null;
+    /* The cell of the variable in the last frame it was looked up
+     * in by name. */
+    private VarFrame.Cell cell = null;
+
+    /* The cell of the global variable, for "global" references. */
+    private VarFrame.Cell globalcell = null;
 
     private String varName = null;
 
@@ -48,6 +55,10 @@ public class SubstThing implements RealThing {
 	return "subst";
     }
 
+    String getVarName() {
+	return varName;
+    }
+
     /**
      * <code>setSubstFromAny</code> creates a Subst object from another type.
      *
@@ -68,8 +79,10 @@ public class SubstThing implements RealThing {
 
     /**
      * <code>get</code> returns the *value* of a SubstThing - in other words,
-     * the Thing that its varName is pointing to. We use a cacheing mechanism
-     * devised by Salvatore Sanfilippo to avoid unnecessary lookups.
+     * the Thing that its varName is pointing to.  Proc variables are
+     * fetched from their slot, and the cell of a variable kept by name
+     * is cached, so that it's only looked up again if the variable is
+     * unset or we're in a different frame.
      *
      * @param interp an <code>Interp</code> value
      * @param thing a <code>Thing</code> value
@@ -79,26 +92,73 @@ public class SubstThing implements RealThing {
     public static Thing get(Interp interp, Thing thing) throws HeclException {
         setSubstFromAny(interp, thing);
         SubstThing getcopy = (SubstThing)thing.getVal();
+	Thing res = null;
+
+	/* Variables in proc frames are fetched straight from their
+	 * slot. */
+	VarFrame frame = interp.getFrame(-1);
+	SlotLayout.Slot s = null;
+	if (frame.layout != null) {
+	    s = getcopy.slot;
+	    if (s == null || s.layout != frame.layout) {
+		s = frame.layout.getSlot(getcopy.varName);
+		getcopy.slot = s;
+	    }
+	    if (s != null) {
+		res = frame.getSlot(s.index);
+	    }
+	}
+	if (s == null) {
+	    res = cellValue(frame, getcopy, false);
+	}
+	if (res == Interp.GLOBALREFTHING) {
+	    res = cellValue(interp.getFrame(0), getcopy, true);
+	}
+	if (res == null) {
+	    /* Let getVar sort out the error. */
+	    res = interp.getVar(getcopy.varName);
+	}
 
-
-        if (getcopy.cacheversion != interp.cacheversion) {
-            getcopy.cacheversion = interp.cacheversion;
-            getcopy.val = interp.getVar(getcopy.varName);
-        } /* else {
-	    System.out.println("CACHE HIT");
-	}  */
-
-	if (getcopy.val.copy) {
+	if (res.copy) {
 	    /* If the Thing value of the substthing is something
 	     * that should be copied, we copy it so that we don't
 	     * mess up the original.  See the set-3 test, for
 	     * example. */
-	    Thing copy = getcopy.val.deepcopy();
+	    Thing copy = res.lazycopy();
 	    copy.copy = false;
-	    interp.setVar(getcopy.varName, copy);
+	    if (s != null && frame.getSlot(s.index) == res) {
+		frame.setSlot(s.index, copy);
+	    } else {
+		interp.setVar(getcopy.varName, copy);
+	    }
 	    return copy;
 	}
-	return getcopy.val;
+	return res;
+    }
+
+    /**
+     * <code>cellValue</code> returns the value of a variable kept by
+     * name in <code>frame</code>, or null if it isn't set there.
+     *
+     * @param frame a <code>VarFrame</code> value
+     * @param st a <code>SubstThing</code> value
+     * @param global true for the global cell cache
+     * @return a <code>Thing</code> value
+     */
+    private static Thing cellValue(VarFrame frame, SubstThing st, boolean global) {
+	VarFrame.Cell c = global ? st.globalcell : st.cell;
+	if (c == null || c.frame != frame || c.value == null) {
+	    c = frame.getCell(st.varName);
+	    if (c == null) {
+		return null;
+	    }
+	    if (global) {
+		st.globalcell = c;
+	    } else {
+		st.cell = c;
+	    }
+	}
+	return c.value;
     }
 
     /**
@@ -15,12 +15,6 @@
 
 package org.hecl;
 
-//#if j2se && memdebug
-import java.lang.ref.WeakReference;
-import java.util.Vector;
-import java.util.Enumeration;
-//#endif
-
 /**
  * The <code>Thing</code> class is what Hecl revolves around. "Things"
  * can be of several types, include strings, integers, lists, hash
@@ -47,20 +41,16 @@ public class Thing extends Object {
     /* Refers to a global variable? */
     public boolean global = false;
 
+    /* The Rep of the list this Thing is an element of.  See
+     * ListThing.Rep. */
+    ListThing.Rep cachedin = null;
+
     /* Used to keep track of nesting depth. */
     private int depth = 0;
 
     /* Depth that things like lists are allowed to nest. */
     static final int NESTDEPTH = 10;
 
-//#if memdebug
-    /* Keep track of how many Things have been created. */
-    static public long thingcounter = 0;
-    /* Actually keep track, via week references, of all the allocated
-     * Things. */
-    static public Vector references = new Vector();
-//#endif
-
     /**
      * Creates a new <code>Thing</code> instance from a string.
      *
@@ -68,8 +58,10 @@ public class Thing extends Object {
      *            a <code>String</code> value
      */
     public Thing(String s) {
-	thingCounterIncr();
         val = new StringThing(s);
+	if (AllocStats.on) {
+	    AllocStats.thing(val);
+	}
     }
 
     /**
@@ -79,8 +71,10 @@ public class Thing extends Object {
      *            a <code>StringBuffer</code> value
      */
     public Thing(StringBuffer s) {
-	thingCounterIncr();
         val = new StringThing(s);
+	if (AllocStats.on) {
+	    AllocStats.thing(val);
+	}
     }
 
     /**
@@ -91,20 +85,12 @@ public class Thing extends Object {
      *            a <code>RealThing</code> value
      */
     public Thing(RealThing realthing) {
-	thingCounterIncr();
         val = realthing;
+	if (AllocStats.on) {
+	    AllocStats.thing(val);
+	}
     }
 
-//#if memdebug
-    private void thingCounterIncr() {
-	references.addElement(new WeakReference(this));
- 	thingcounter ++;
-    }
-//#else
-    /* Hopefully this is a NOOP. */
-    private void thingCounterIncr() {}
-//#endif
-
     /**
      * <code>setVal</code> sets the internal representation of the Thing.
      *
@@ -112,6 +98,9 @@ public class Thing extends Object {
      */
     public void setVal(RealThing realthing) {
         val = realthing;
+	if (cachedin != null) {
+	    cachedin = ListThing.Rep.drop(cachedin);
+	}
     }
 
     public void setCopyVal(RealThing realthing) {
@@ -130,6 +119,13 @@ public class Thing extends Object {
     }
 
 
+    /**
+     * <code>emptyThing</code> returns a new empty string.  It isn't
+     * shared, as lappend and friends change the value of a Thing in
+     * place.
+     *
+     * @return a <code>Thing</code> value
+     */
     public static final Thing emptyThing() {
 	return new Thing((String)null);
     }
@@ -154,7 +150,7 @@ public class Thing extends Object {
      *            a <code>Thing</code> value.
      */
     public void makeref(Thing newval) {
-	this.val = newval.val;
+	setVal(newval.val);
     }
 
     /**
@@ -228,13 +224,20 @@ public class Thing extends Object {
      * @throws HeclException
      */
     public Thing deepcopy() throws HeclException {
+	RealThing realthing = val;
+	if (realthing instanceof NumberThing || realthing instanceof StringThing) {
+	    /* These can't contain anything.  Shared Things like
+	     * emptyThing are copied by several threads at once, so
+	     * depth is left alone. */
+	    return new Thing(realthing.deepcopy());
+	}
 	depth ++;
         /* If we have too deep a nesting, kill it. */
 	if (depth > NESTDEPTH ) {
 	    throw new
 		HeclException("reference hard limit - circular reference?");
 	}
-	RealThing realthing = val.deepcopy();
+	realthing = realthing.deepcopy();
 	/* We've done the deepcopy, we can lower the depth again. */
 	depth --;
   	//Thing retval = new Thing(realthing);
@@ -243,4 +246,26 @@ public class Thing extends Object {
 	//return retval;
 	return new Thing(realthing);
     }
+
+    /**
+     * <code>lazycopy</code> copies the thing like <code>deepcopy</code>,
+     * except that lists and hashes share their elements with the
+     * copy until one of them is changed, rather than being copied
+     * straight away.  This is what's used whenever a value has to be
+     * kept from being changed, such as literals and Things marked to
+     * be copied.
+     *
+     * @return a <code>Thing</code> value
+     * @throws HeclException
+     */
+    public Thing lazycopy() throws HeclException {
+	RealThing realthing = val;
+	if (realthing instanceof ListThing) {
+	    return new Thing(((ListThing)realthing).share());
+	}
+	if (realthing instanceof HashThing) {
+	    return new Thing(((HashThing)realthing).share());
+	}
+	return deepcopy();
+    }
 }
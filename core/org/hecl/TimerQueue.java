@@ -0,0 +1,229 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The <code>TimerQueue</code> class holds the timers of an
+ * interpreter, ordered by the time they go off.  It's a binary heap,
+ * so adding a timer, taking the next one off, and cancelling one by
+ * name all take O(log n) time.  Timers that go off at the same time
+ * come out in the order they were added.  All the methods are
+ * synchronized.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+class TimerQueue {
+    private HeclTask[] heap = new HeclTask[16];
+    private int size = 0;
+
+    /* Task name -> HeclTask, for cancelling. */
+    private Hashtable names = new Hashtable();
+
+    /* Counts the tasks added, so that equal times keep their
+     * order. */
+    private long added = 0;
+
+    /**
+     * The <code>add</code> method adds a task, which goes off at
+     * the time given by its generation.
+     *
+     * @param t a <code>HeclTask</code> value
+     */
+    synchronized void add(HeclTask t) {
+	if (size == heap.length) {
+	    HeclTask[] newheap = new HeclTask[size * 2];
+	    System.arraycopy(heap, 0, newheap, 0, size);
+	    heap = newheap;
+	}
+	t.seq = added++;
+	heap[size] = t;
+	t.heapindex = size;
+	size++;
+	up(size - 1);
+	names.put(t.getName(), t);
+    }
+
+    /**
+     * The <code>peek</code> method returns the next task to go off,
+     * or null if there are none.
+     *
+     * @return a <code>HeclTask</code> value
+     */
+    synchronized HeclTask peek() {
+	return size > 0 ? heap[0] : null;
+    }
+
+    /**
+     * The <code>poll</code> method takes the next task off the queue
+     * and returns it, if it goes off no later than
+     * <code>until</code>.  Otherwise, it returns null.
+     *
+     * @param until a <code>long</code> value
+     * @return a <code>HeclTask</code> value
+     */
+    synchronized HeclTask poll(long until) {
+	if (size == 0 || heap[0].getGeneration() > until) {
+	    return null;
+	}
+	HeclTask t = heap[0];
+	removeAt(0);
+	return t;
+    }
+
+    /**
+     * The <code>get</code> method returns the task called
+     * <code>name</code>, or null.
+     *
+     * @param name a <code>String</code> value
+     * @return a <code>HeclTask</code> value
+     */
+    synchronized HeclTask get(String name) {
+	return (HeclTask)names.get(name);
+    }
+
+    /**
+     * The <code>remove</code> method cancels the task called
+     * <code>name</code>, if there is one.
+     *
+     * @param name a <code>String</code> value
+     * @return a <code>boolean</code> value - whether it was there
+     */
+    synchronized boolean remove(String name) {
+	HeclTask t = (HeclTask)names.get(name);
+	if (t == null) {
+	    return false;
+	}
+	removeAt(t.heapindex);
+	return true;
+    }
+
+    synchronized int size() {
+	return size;
+    }
+
+    synchronized void clear() {
+	for (int i = 0; i < size; i++) {
+	    heap[i].heapindex = -1;
+	    heap[i] = null;
+	}
+	size = 0;
+	names.clear();
+    }
+
+    /**
+     * The <code>elements</code> method returns the tasks, in the
+     * order they'll go off.
+     *
+     * @return a <code>Vector</code> value
+     */
+    synchronized Vector elements() {
+	HeclTask[] sorted = new HeclTask[size];
+	System.arraycopy(heap, 0, sorted, 0, size);
+	/* Heapsort the copy, without touching the tasks' indexes. */
+	for (int n = size; n > 1; n--) {
+	    HeclTask top = sorted[0];
+	    sorted[0] = sorted[n - 1];
+	    siftdown(sorted, 0, n - 1);
+	    sorted[n - 1] = top;
+	}
+	Vector v = new Vector(size);
+	for (int i = size - 1; i >= 0; i--) {
+	    v.addElement(sorted[i]);
+	}
+	return v;
+    }
+
+    private void removeAt(int i) {
+	HeclTask t = heap[i];
+	names.remove(t.getName());
+	t.heapindex = -1;
+	size--;
+	if (i != size) {
+	    heap[i] = heap[size];
+	    heap[i].heapindex = i;
+	    heap[size] = null;
+	    if (i > 0 && before(heap[i], heap[(i - 1) / 2])) {
+		up(i);
+	    } else {
+		down(i);
+	    }
+	} else {
+	    heap[size] = null;
+	}
+    }
+
+    private void up(int i) {
+	HeclTask t = heap[i];
+	while (i > 0) {
+	    int parent = (i - 1) / 2;
+	    if (!before(t, heap[parent])) {
+		break;
+	    }
+	    heap[i] = heap[parent];
+	    heap[i].heapindex = i;
+	    i = parent;
+	}
+	heap[i] = t;
+	t.heapindex = i;
+    }
+
+    private void down(int i) {
+	HeclTask t = heap[i];
+	int half = size / 2;
+	while (i < half) {
+	    int child = 2 * i + 1;
+	    if (child + 1 < size && before(heap[child + 1], heap[child])) {
+		child++;
+	    }
+	    if (!before(heap[child], t)) {
+		break;
+	    }
+	    heap[i] = heap[child];
+	    heap[i].heapindex = i;
+	    i = child;
+	}
+	heap[i] = t;
+	t.heapindex = i;
+    }
+
+    /* Like down, but on a copy of the heap, leaving heapindex alone. */
+    private static void siftdown(HeclTask[] a, int i, int n) {
+	HeclTask t = a[i];
+	while (2 * i + 1 < n) {
+	    int child = 2 * i + 1;
+	    if (child + 1 < n && before(a[child + 1], a[child])) {
+		child++;
+	    }
+	    if (!before(a[child], t)) {
+		break;
+	    }
+	    a[i] = a[child];
+	    i = child;
+	}
+	a[i] = t;
+    }
+
+    /* Whether a goes off before b. */
+    private static boolean before(HeclTask a, HeclTask b) {
+	long ga = a.getGeneration();
+	long gb = b.getGeneration();
+	return ga < gb || (ga == gb && a.seq < b.seq);
+    }
+}
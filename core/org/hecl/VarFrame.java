@@ -0,0 +1,225 @@
+/* Copyright 2004-2010 David N. Welton, DedaSys LLC
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+package org.hecl;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * The <code>VarFrame</code> class holds the variables of one level of
+ * the variable stack.  Frames created for procs use the proc's
+ * <code>SlotLayout</code>, and keep their variables in a
+ * <code>Thing[]</code> indexed by slot.  The global frame, and any
+ * variables that don't fit in the layout, use a Hashtable of
+ * <code>Cell</code>s.  A Cell stays the same for as long as its
+ * variable is set, so that SubstThing can hold on to it.
+ *
+ * @author <a href="mailto:davidw@dedasys.com">David N. Welton </a>
+ * @version 1.0
+ */
+public class VarFrame {
+    /* The layout of the slots, or null if this frame has none. */
+    SlotLayout layout = null;
+
+    /* Variables by slot - null means not set. */
+    Thing[] slots = null;
+
+    /* Variables by name - name -> Cell. */
+    private Hashtable vars = null;
+
+    /**
+     * Creates a new <code>VarFrame</code> instance that keeps all its
+     * variables by name.
+     *
+     */
+    public VarFrame() {
+	vars = new Hashtable();
+    }
+
+    /**
+     * Creates a new <code>VarFrame</code> instance with slots as
+     * given by <code>layout</code>.
+     *
+     * @param layout a <code>SlotLayout</code> value
+     */
+    VarFrame(SlotLayout layout) {
+	this.layout = layout;
+	slots = new Thing[layout.size()];
+    }
+
+    /**
+     * The <code>getSlot</code> method returns the variable in a slot,
+     * or null if it's not set.
+     *
+     * @param i an <code>int</code> value
+     * @return a <code>Thing</code> value
+     */
+    Thing getSlot(int i) {
+	return i < slots.length ? slots[i] : null;
+    }
+
+    /**
+     * The <code>setSlot</code> method sets the variable in a slot.
+     * The layout may have grown since this frame was created, in
+     * which case there's room to be made.
+     *
+     * @param i an <code>int</code> value
+     * @param value a <code>Thing</code> value
+     */
+    void setSlot(int i, Thing value) {
+	if (i >= slots.length) {
+	    Thing[] newslots = new Thing[layout.size()];
+	    System.arraycopy(slots, 0, newslots, 0, slots.length);
+	    slots = newslots;
+	}
+	slots[i] = value;
+    }
+
+    /**
+     * The <code>get</code> method returns a variable, or null if it's
+     * not set.
+     *
+     * @param name a <code>String</code> value
+     * @return a <code>Thing</code> value
+     */
+    public Thing get(String name) {
+	if (layout != null) {
+	    int i = layout.find(name);
+	    if (i >= 0) {
+		return getSlot(i);
+	    }
+	}
+	Cell cell = getCell(name);
+	return cell == null ? null : cell.value;
+    }
+
+    /**
+     * The <code>getCell</code> method returns the Cell of a variable
+     * that is kept by name, or null if there is none.
+     *
+     * @param name a <code>String</code> value
+     * @return a <code>Cell</code> value
+     */
+    Cell getCell(String name) {
+	return vars == null ? null : (Cell)vars.get(name);
+    }
+
+    /**
+     * The <code>put</code> method sets a variable.
+     *
+     * @param name a <code>String</code> value
+     * @param value a <code>Thing</code> value
+     */
+    public void put(String name, Thing value) {
+	if (layout != null) {
+	    int i = layout.find(name);
+	    if (i < 0) {
+		i = layout.add(name);
+	    }
+	    if (i >= 0) {
+		setSlot(i, value);
+		return;
+	    }
+	}
+	if (vars == null) {
+	    vars = new Hashtable();
+	}
+	Cell cell = (Cell)vars.get(name);
+	if (cell == null) {
+	    vars.put(name, new Cell(this, value));
+	} else {
+	    cell.value = value;
+	}
+    }
+
+    /**
+     * The <code>remove</code> method unsets a variable, returning its
+     * old value, or null if it wasn't set.
+     *
+     * @param name a <code>String</code> value
+     * @return a <code>Thing</code> value
+     */
+    public Thing remove(String name) {
+	if (layout != null) {
+	    int i = layout.find(name);
+	    if (i >= 0) {
+		Thing old = getSlot(i);
+		if (old != null) {
+		    slots[i] = null;
+		}
+		return old;
+	    }
+	}
+	Cell cell = vars == null ? null : (Cell)vars.remove(name);
+	if (cell == null) {
+	    return null;
+	}
+	/* Anyone still holding the cell will see that it's gone. */
+	Thing old = cell.value;
+	cell.value = null;
+	return old;
+    }
+
+    /**
+     * The <code>containsKey</code> method returns true if the variable
+     * is set in this frame.
+     *
+     * @param name a <code>String</code> value
+     * @return a <code>boolean</code> value
+     */
+    public boolean containsKey(String name) {
+	return get(name) != null;
+    }
+
+    /**
+     * The <code>getVariables</code> method returns a new Hashtable with
+     * all of the variables set in this frame.
+     *
+     * @return a <code>Hashtable</code> value
+     */
+    public Hashtable getVariables() {
+	Hashtable res = new Hashtable();
+	if (vars != null) {
+	    for (Enumeration e = vars.keys(); e.hasMoreElements();) {
+		Object key = e.nextElement();
+		res.put(key, ((Cell)vars.get(key)).value);
+	    }
+	}
+	if (layout != null) {
+	    String[] names = layout.getNames();
+	    for (int i = 0; i < slots.length && i < names.length; i++) {
+		if (slots[i] != null) {
+		    res.put(names[i], slots[i]);
+		}
+	    }
+	}
+	return res;
+    }
+
+    /**
+     * A <code>Cell</code> holds the value of a variable kept by name.
+     * Its value is null once the variable has been unset.
+     */
+    static final class Cell {
+	final VarFrame frame;
+	Thing value;
+
+	Cell(VarFrame frame, Thing value) {
+	    this.frame = frame;
+	    this.value = value;
+	}
+    }
+}
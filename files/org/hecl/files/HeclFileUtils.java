@@ -22,8 +22,12 @@ package org.hecl.files;
 import java.io.IOException;
 
 //#if javaversion >= 1.5
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
 //#else
 import javax.microedition.io.Connector;
 import javax.microedition.io.file.FileConnection;
@@ -35,6 +39,8 @@ import java.io.DataOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.hecl.CodeSerializer;
+import org.hecl.CodeThing;
 import org.hecl.HeclException;
 import org.hecl.Interp;
 import org.hecl.Thing;
@@ -114,11 +120,112 @@ public class HeclFileUtils {
 	interp.currentFile = new Thing(filename);
 
 	try {
-	    interp.eval(readFile(filename));
+	    Thing script = readFile(filename);
+//#if javaversion >= 1.5
+	    script = cachedCode(interp, script);
+//#endif
+	    interp.eval(script);
 	} catch (HeclException he) {
 	    throw he;
 	} catch (Exception e) {
 	    throw new HeclException("Error while running '" + filename + "': " + e.toString());
 	}
     }
+
+//#if javaversion >= 1.5
+
+    /**
+     * The <code>cachedCode</code> method returns <code>script</code>
+     * in parsed form.  If the <code>hecl.cachedir</code> property is
+     * set, parsed scripts are kept in the directory it names, under
+     * the SHA-1 hash of their text, so that a script that hasn't
+     * changed since the last time it was sourced doesn't need to be
+     * parsed again.  Nothing is ever removed from the directory, so
+     * the cache is off unless asked for.  Problems with the cache are
+     * ignored, and the script is just parsed.
+     *
+     * @param interp an <code>Interp</code> value
+     * @param script a <code>Thing</code> value
+     * @return a <code>Thing</code> value
+     * @exception HeclException if the script can't be parsed
+     */
+    public static Thing cachedCode(Interp interp, Thing script)
+	throws HeclException {
+	String dirname = System.getProperty("hecl.cachedir");
+	if (dirname == null || dirname.length() == 0) {
+	    return script;
+	}
+
+	File cachefile;
+	try {
+	    cachefile = new File(dirname, scriptHash(script.toString()) + ".hclc");
+	} catch (Exception e) {
+	    return script;
+	}
+
+	if (cachefile.isFile()) {
+	    DataInputStream in = null;
+	    try {
+		in = new DataInputStream(new BufferedInputStream(
+					     new FileInputStream(cachefile)));
+		return new Thing(CodeSerializer.read(in));
+	    } catch (IOException e) {
+		/* Stale or damaged - parse it and write it again. */
+	    } finally {
+		close(in);
+	    }
+	}
+
+	CodeThing code = CodeThing.get(interp, script);
+	/* Write to a temporary file and rename it into place, so that
+	 * other processes never see half of a file. */
+	File tmpfile = null;
+	DataOutputStream out = null;
+	try {
+	    File dir = cachefile.getParentFile();
+	    dir.mkdirs();
+	    tmpfile = File.createTempFile("hecl", ".tmp", dir);
+	    out = new DataOutputStream(new BufferedOutputStream(
+					   new FileOutputStream(tmpfile)));
+	    CodeSerializer.write(code, out);
+	    out.close();
+	    out = null;
+	    if (!tmpfile.renameTo(cachefile)) {
+		tmpfile.delete();
+	    }
+	} catch (Exception e) {
+	    close(out);
+	    if (tmpfile != null) {
+		tmpfile.delete();
+	    }
+	}
+	return script;
+    }
+
+    private static String scriptHash(String s) throws Exception {
+	MessageDigest md = MessageDigest.getInstance("SHA-1");
+	md.update(("hecl" + CodeSerializer.VERSION + "\n").getBytes("UTF-8"));
+	byte[] digest = md.digest(s.getBytes("UTF-8"));
+	StringBuffer sb = new StringBuffer();
+	for (int i = 0; i < digest.length; i++) {
+	    String hex = Integer.toHexString(digest[i] & 0xff);
+	    if (hex.length() == 1) {
+		sb.append('0');
+	    }
+	    sb.append(hex);
+	}
+	return sb.toString();
+    }
+
+    private static void close(Object stream) {
+	try {
+	    if (stream instanceof InputStream) {
+		((InputStream)stream).close();
+	    } else if (stream instanceof OutputStream) {
+		((OutputStream)stream).close();
+	    }
+	} catch (IOException e) {
+	}
+    }
+//#endif
 }
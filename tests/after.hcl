@@ -7,3 +7,43 @@ test after-1 {
     after 400
     set x
 } {1 2}
+
+test after-2 {
+    global y
+    set y {}
+    after 60 {lappend $y c}
+    after 20 {lappend $y a}
+    after 20 {lappend $y b}
+    set id [after 40 {lappend $y cancelled}]
+    after cancel $id
+    after 100
+    set y
+} {a b c}
+
+test after-3 {
+    set ids {}
+    for {set i 0} {< $i 2000} {incr $i} {
+	lappend $ids [after [+ 100000 $i] {}]
+    }
+    set ok [= [llen [after info]] 2000]
+    set first [lindex [after info] 0]
+    foreach id $ids {
+	after cancel $id
+    }
+    list $ok [eq $first [lindex $ids 0]] [llen [after info]]
+} {1 1 0}
+
+test after-4 {
+    global z
+    after stats reset
+    after 10 {set z 1}
+    after 10 {set z 2}
+    after idle {set z 3}
+    after 50
+    set s [after stats]
+    set t [hget $s timer]
+    list [hget [hget $t run] count] [hget $t maxdepth] [hget $t depth] \
+	[hget [hget [hget $s idle] run] count] \
+	[llen [hget [hget $t late] buckets]] \
+	[hcontains [hget $s async] late]
+} {3 3 0 1 16 0}
@@ -0,0 +1,46 @@
+proc allocpairs {n} {
+    set l {}
+    for {set i 0} {< $i $n} {incr $i} {
+	lappend $l [list $i $i]
+    }
+    llen $l
+}
+
+test alloc-1 {
+    alloc reset
+    alloc start
+    allocpairs 100
+    alloc stop
+    set s [alloc stats]
+    list [hget [hget [hget $s commands] allocpairs] calls] \
+	[hget [hget [hget $s commands] list] calls] \
+	[>= [hget [hget $s things] list] 100]
+} {1 100 1}
+
+test alloc-2 {
+    # Nothing is counted while it's stopped.
+    allocpairs 10
+    hget [hget [hget [alloc stats] commands] list] calls
+} {100}
+
+test alloc-3 {
+    set files [hkeys [hget [alloc stats] scripts]]
+    set found 0
+    foreach f $files {
+	if { > [strfind alloc.hcl $f] -1 } {
+	    incr $found
+	}
+    }
+    set found
+} {1}
+
+test alloc-4 {
+    alloc reset
+    set s [alloc stats]
+    list [hget [hget $s things] list] [llen [hget $s commands]]
+} {0 0}
+
+test alloc-5 {
+    catch {alloc bogus} err
+    lindex $err 0
+} {ERROR {Unknown alloc option 'bogus'.}}
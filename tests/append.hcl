@@ -17,4 +17,40 @@ test append-3 {
 test append-4 {
      proc doappend {} {append a b}
      set x "[doappend][doappend]";
-} abab
\ No newline at end of file
+} abab
+test append-5 {
+    set s ""
+    for {set i 0} {< $i 1000} {incr $i} {
+	append $s $i ","
+	if {!= [strlen $s] [strlen [copy $s]]} {
+	    throw "length mismatch"
+	}
+    }
+    list [strlen $s] [strrange $s 0 9] [append $s $s]
+    strlen $s
+} {7780}
+
+test append-6 {
+    set a "x"
+    set b [copy $a]
+    append $a y
+    set l [list $a]
+    append [lindex $l 0] z
+    list $a $b [append "lit" eral] $l
+} {xyz x literal xyz}
+
+test append-7 {
+    set s foo
+    append $s z
+    set t [append $s q]
+    append $s r
+    list $s $t
+} {foozqr foozq}
+
+test append-8 {
+    set x [+ 1 0]
+    set y [append $x a]
+    append $x b
+    append $y c
+    list $x $y
+} {1ab 1ac}
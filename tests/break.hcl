@@ -16,4 +16,45 @@ test break-2 {
     break
     set res "${res}y"
     set res
-} {{BREAK } {break 3}}
\ No newline at end of file
+} {{BREAK } {break 3}}
+
+test break-3 {
+    proc break-3-1 {} {
+	break
+    }
+    set res {}
+    foreach i {1 2} {
+	catch {
+	    break-3-1
+	} err
+	lappend $res $err
+    }
+    set res
+} {{{BREAK } {break 2} {break-3-1 2}} {{BREAK } {break 2} {break-3-1 2}}}
+
+# A break that gets out of an event, or out of the outermost eval in
+# an interpreter, is handed over as an exception of its own, which
+# isn't changed by later breaks.
+java org.hecl.HeclTask hecltask
+
+proc breaktask {ip script} {
+    set t [hecltask -new [list $script [long 0] test]]
+    $t seterrorprint 0
+    $t execute $ip
+    $t geterror
+}
+
+test break-4 {
+    set child [[thisinterp] fork]
+    set errs [list [breaktask [thisinterp] {break}] \
+		  [breaktask [thisinterp] {if {= 1 1} {break}}] \
+		  [breaktask $child {break}] \
+		  [breaktask $child {if {= 1 1} {break}}]]
+    $child terminate
+    set res {}
+    foreach e $errs {
+	lappend $res [$e tostring]
+    }
+    lappend $res [!= [[lindex $errs 0] hashcode] [[lindex $errs 1] hashcode]]
+    lappend $res [!= [[lindex $errs 2] hashcode] [[lindex $errs 3] hashcode]]
+} {{{BREAK } {break 1}} {{BREAK } {break 1} {if 1}} {{BREAK } {break 1}} {{BREAK } {break 1} {if 1}} 1 1}
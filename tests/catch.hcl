@@ -7,4 +7,31 @@ test catch-1 {
 test catch-2 {
     catch {set foo 1} bar
     set bar
-} {1}
\ No newline at end of file
+} {1}
+
+test catch-3 {
+    set res {}
+    foreach i {1 2 3} {
+	set x $i
+	catch {
+	    if { = $i 3 } {
+		set x $nosuchvar
+	    }
+	} err
+	lappend $res $err
+    }
+    list [llen $res] [lindex $res 2]
+} {3 {{ERROR {Variable nosuchvar does not exist} 2} {if 2}}}
+
+# A command that doesn't exist is an error before its arguments are
+# substituted, both the first time and once the loop body is
+# compiled.
+test catch-4 {
+    set ran 0
+    set res {}
+    for {set i 0} {< $i 10} {incr $i} {
+	catch {nosuchcmd [incr $ran]} err
+	lappend $res [lindex $err 0]
+    }
+    list $ran [lindex $res 0] [lindex $res 9]
+} {0 {ERROR {Command 'nosuchcmd' does not exist} 1} {ERROR {Command 'nosuchcmd' does not exist} 1}}
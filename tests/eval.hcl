@@ -3,4 +3,24 @@ test eval-1 {
     set code {set foo 1}
     eval $code
     set foo
-} {1}
\ No newline at end of file
+} {1}
+# Commands that re-enter the interpreter keep using their arguments
+# afterwards, while the commands run inside them take argv arrays of
+# the same length from the interpreter's pool.
+test eval-2 {
+    proc evalnest {a b} {
+	if {> $a 0} {
+	    set inner [evalnest [- $a 1] $b]
+	} else {
+	    set inner [eval {list x y}]
+	}
+	list $a $inner $b
+    }
+    set res {}
+    foreach v {a b} {
+	lappend $res $v [catch {eval {foreach w {1 2} {lappend $res $w x}}}]
+	catch {eval {throw $v}} err
+	lappend $res [lindex [lindex $err 0] 1]
+    }
+    list [evalnest 2 q] $res
+} {{2 {1 {0 {x y} q} q} q} {1 x 2 x a 0 a 1 x 2 x b 0 b}}
@@ -0,0 +1,70 @@
+# fork.hcl - Interp.fork, used through the java command.
+
+proc forklit {} {
+    set l {a b}
+    lappend $l c
+    set l
+}
+
+# Procs defined or redefined in a fork aren't seen by the parent.
+test fork-1 {
+    set child [[thisinterp] fork]
+    $child eval {
+	proc forkonly {} {return child}
+	proc forklit {} {return child}
+    }
+    set res [list [$child eval forkonly] [$child eval forklit]]
+    lappend $res [[thisinterp] commandexists forkonly] [forklit]
+    $child terminate
+    set res
+} {child child 0 {a b c}}
+
+# Changes to globals in a fork don't reach the parent.
+test fork-2 {
+    global forkglobal
+    set forkglobal [list a b]
+    set child [[thisinterp] fork]
+    $child eval {
+	global forkglobal
+	lappend $forkglobal c
+	set forkglobal2 1
+    }
+    set res [list [$child eval {copy $forkglobal}] $forkglobal]
+    lappend $res [[thisinterp] eval {catch {set forkglobal2}}]
+    $child terminate
+    set res
+} {{a b c} {a b} 1}
+
+# Auxiliary data is copied.
+test fork-3 {
+    [thisinterp] setauxdata forkaux parent
+    set child [[thisinterp] fork]
+    set res [list [$child getauxdata forkaux]]
+    $child setauxdata forkaux child
+    lappend $res [[thisinterp] getauxdata forkaux]
+    [thisinterp] removeauxdata forkaux
+    $child terminate
+    set res
+} {parent parent}
+
+# Procs in a fork run their own copy of the code, which must still
+# keep its literals from being modified.
+test fork-4 {
+    set res [list [forklit] [forklit]]
+    set child [[thisinterp] fork]
+    lappend $res [$child eval forklit] [$child eval forklit] [forklit]
+    $child terminate
+    set res
+} {{a b c} {a b c} {a b c} {a b c} {a b c}}
+
+# Forking doesn't change how the parent's globals behave: they're
+# still the same Things as before.
+test fork-5 {
+    global forkref
+    set forkref [list a]
+    set l [list $forkref]
+    set child [[thisinterp] fork]
+    $child terminate
+    lappend $forkref b
+    lindex $l 0
+} {a b}
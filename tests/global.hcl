@@ -96,4 +96,25 @@ test global-6 {
     set global6 dummy
     unset global6;
     global-6-1;
-} {{ERROR {Variable foreach6 does not exist} 2} {foreach 3} {global-6-1 12}}
\ No newline at end of file
+} {{ERROR {Variable foreach6 does not exist} 2} {foreach 3} {global-6-1 12}}
+
+test global-7 {
+    proc global-7-1 {} {
+	global global7;
+	return $global7;
+    }
+    proc global-7-2 {v} {
+	global global7;
+	set global7 $v;
+    }
+    set res {}
+    foreach v {a b c} {
+	global-7-2 $v
+	lappend $res [global-7-1]
+	upeval 0 {unset global7}
+	lappend $res [catch {global-7-1}]
+	global-7-2 "re$v"
+	lappend $res [global-7-1]
+    }
+    set res
+} {a 1 rea b 1 reb c 1 rec}
@@ -36,4 +36,55 @@ test hash-6 {
 	set myhash [hash { }]
     }
     set myhash
-} {}
\ No newline at end of file
+} {}
+
+test hash-7 {
+    set h [hash {k v}]
+    set outer [list $h z]
+    set res [list [eq $outer "{k v} z"]]
+    hset $h k w
+    lappend $res [eq $outer "{k w} z"]
+    hremove $h k
+    hset $h j x
+    lappend $res [eq $outer "{j x} z"]
+} {1 1 1}
+
+test hash-8 {
+    set h [hash {z 1 a 2 m 3}]
+    hset $h b 4
+    hremove $h a
+    hset $h a 5
+    hset $h z 6
+    set res [list [hkeys $h]]
+    foreach {k v} $h {
+	lappend $res "$k=$v"
+    }
+    lappend $res $h
+} {{z m b a} z=6 m=3 b=4 a=5 {z 6 m 3 b 4 a 5}}
+
+test hash-9 {
+    set h [hash {}]
+    for {set i 0} {< $i 1000} {incr $i} {
+	hset $h k$i [copy $i]
+    }
+    for {set i 0} {< $i 1000} {incr $i 2} {
+	hremove $h k$i
+    }
+    set sum 0
+    foreach {k v} $h {
+	incr $sum $v
+    }
+    list [llen [hkeys $h]] $sum [hget $h k999] [hcontains $h k998] [lindex [hkeys $h] 0]
+} {500 250000 999 0 k1}
+
+test hash-10 {
+    set h [hash {a 1 b 2}]
+    set h2 [hash $h]
+    hset $h2 c 3
+    hremove $h a
+    set hl [list $h2]
+    foreach x $hl {
+	hset $x d 4
+    }
+    list [hkeys $h] [hkeys $h2] [hkeys $x]
+} {b {a b c} {a b c d}}
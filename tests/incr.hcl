@@ -30,3 +30,13 @@ test incr-3 {
     set tmp
 } {2}
 
+
+test incr-4 {
+    set x [+ 1 0]
+    incr $x
+    set l [list [+ 1 0] [eq a a]]
+    incr [lindex $l 0]
+    set y [eq a a]
+    incr $y 5
+    list $x $l [+ 1 0] $y [eq a a]
+} {2 {2 1} 1 6 1}
@@ -0,0 +1,57 @@
+# interppool.hcl - InterpPool, used through the java command.
+
+java org.hecl.InterpPool interppool
+
+proc poolboot {} {
+    return {set boot [list 1 2]; proc bootproc {} {return fromboot}}
+}
+
+# Nothing a script leaves behind is seen by the next one.
+test interppool-1 {
+    set pool [interppool -new [list 1 [null] [poolboot]]]
+    set ip [$pool borrow]
+    $ip eval {
+	set x 5
+	proc leftover {} {return 1}
+	profile start
+	bootproc
+    }
+    $ip setauxdata leftover yes
+    $pool release $ip
+
+    set ip [$pool borrow]
+    set res [list [llen [$ip eval {profile results}]]]
+    lappend $res [$ip eval {catch {set x}}] [$ip eval {catch leftover}]
+    lappend $res [$ip eval bootproc] [$ip commandexists leftover]
+    lappend $res [eq [$ip getauxdata leftover] ""]
+    $pool release $ip
+    $pool close
+    set res
+} {0 1 1 fromboot 0 1}
+
+# The globals set by the bootstrap script are the same every time,
+# even if a script changes them.
+test interppool-2 {
+    set pool [interppool -new [list 2 [null] [poolboot]]]
+    set res {}
+    for {set i 0} {< $i 3} {incr $i} {
+	set ip [$pool borrow]
+	lappend $res [$ip eval {copy $boot}]
+	$ip eval {lappend $boot 3; set boot 4}
+	$pool release $ip
+    }
+    $pool close
+    set res
+} {{1 2} {1 2} {1 2}}
+
+test interppool-3 {
+    set pool [interppool -new [list 2 [null] [null]]]
+    set ip [$pool borrow]
+    set res [list [$pool available]]
+    $pool close
+    lappend $res [$pool available]
+    $pool release $ip
+    lappend $res [$pool available]
+    catch {$pool borrow} err
+    lappend $res [> [strfind "Interp pool is closed" $err] 0]
+} {1 0 0 1}
@@ -5,7 +5,7 @@ test intro-1 {
     # We should better split the commands into multiple lists so we can
     # separate extensions from core commands.
     foreach exp {
-	!= % * + - / 1+ 1- < <= = > >= abs acos after alias and
+	!= % * + - / 1+ 1- < <= = > >= abs acos after alias alloc and
 	append asin atan base64::decode base64::encode bgerror break catch cbrt
 	ceil classof clock continue copy cos cosh double eq eval exit exp expm1
 	fail false
@@ -19,8 +19,8 @@ test intro-1 {
 	filter float floor for foreach
 	global hasclass hash hclear hcontains hget hkeys hremove hset http.data
 	http.formatQuery http.geturl http.ncode http.status hypot if incr
-	int intro java join lappend lindex linsert list llen load log log10 log1p
-	long lrange lset ne not null ok open or pow proc puts random rename
+	int intro java join lappend lindex linsert list llen lmap load log log10 log1p
+	long lrange lset ne not null ok open or pow proc profile puts random rename
 	return round runtime.freememory runtime.totalmemory search set
 	signum sin sinh sort source split sqrt strbytelen strcmp
 	strfind strindex strlast strlen strlower strrange strrep strtrim strtriml
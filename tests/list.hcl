@@ -36,6 +36,11 @@ test lrange-7 {
     lrange $foo -2 -1
 } {f g}
 
+test lrange-8 {
+    set foo {a b c}
+    list [catch {lrange $foo 1 3}] [catch {lrange $foo 3 4}] [llen [lrange $foo 3 2]]
+} {1 1 0}
+
 proc touchlist {} {
     set lst {}
     lappend $lst "foo"
@@ -53,6 +58,79 @@ test list-9 {
     lindex $foo -10
 } {a}
 
+test list-10 {
+    set inner [list b a]
+    set outer [list $inner c]
+    set res [list [eq $outer "{b a} c"]]
+    lappend $inner x
+    lappend $res [eq $outer "{b a x} c"]
+    linsert $inner 0 q
+    lappend $res [eq $outer "{q b a x} c"]
+} {1 1 1}
+
+test list-11 {
+    set l [list c b a]
+    set outer [list $l]
+    set res [list [eq $outer "{c b a}"]]
+    lset $l 0 z
+    lappend $res [eq $outer "{z b a}"]
+} {1 1}
+
+test list-12 {
+    set l [list a b c d]
+    set r [lrange $l 1 2]
+    lset $l 1 x
+    lappend $r y
+    set r2 [lrange $l 2 end]
+    lappend $l e
+    list $l $r $r2 [lrange $l 3 end]
+} {{a x c d e} {b c y} {c d} {d e}}
+
+test list-13 {
+    set src [list [list a b] [list c d]]
+    set res {}
+    foreach x $src {
+	lappend $x z
+	lset $x 0 q
+	lappend $res $x
+    }
+    proc list13 {l} {
+	lappend $l e
+	return $l
+    }
+    lappend $res [list13 {1 2}] [list13 {1 2}]
+    lappend $res $src
+} {{q b z} {q d z} {1 2 e} {1 2 e} {{a b} {c d}}}
+
+# Elements changed in place through another reference.
+test list-14 {
+    set s [copy foo]
+    set h [hash {k v}]
+    set outer [list $s $h]
+    set res [list [eq $outer "foo {k v}"]]
+    append [lindex $outer 0] z
+    lappend $res [eq $outer "fooz {k v}"]
+    hset $h k w
+    lappend $res [eq $outer "fooz {k w}"]
+} {1 1 1}
+
+# Cached strings are dropped all the way up, and for every list an
+# element is in.
+test list-15 {
+    set s [copy a]
+    set inner [list $s]
+    set outer [list $inner $s]
+    set other [list $s]
+    set res [list [eq $outer "a a"] [eq $other a]]
+    append $s b
+    lappend $res [eq $outer "ab ab"] [eq $other ab]
+    set n 1
+    set l [list $n]
+    lappend $res [eq $l 1]
+    incr $n
+    lappend $res [eq $l 2]
+} {1 1 1 1 1 1}
+
 test emptylist-1 {
     set a [puts a]
     lappend $a x
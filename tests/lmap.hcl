@@ -0,0 +1,55 @@
+test lmap-1 {
+    lmap {1 2 3 4} x {* $x $x}
+} {1 4 9 16}
+
+test lmap-2 {
+    list [llen [lmap {} x {set x}]] [lmap {a b} x {list $x $x}]
+} {0 {{a a} {b b}}}
+
+test lmap-3 {
+    set l {}
+    for {set i 0} {< $i 5000} {incr $i} {
+	lappend $l [copy $i]
+    }
+    set m [lmap $l x {+ $x 1} parallel 1]
+    set f [filter $l x {= [% $x 1000] 0} parallel 1]
+    list [llen $m] [lindex $m 0] [lindex $m 4999] $f
+} {5000 1 5000 {0 1000 2000 3000 4000}}
+
+proc lmaptwice {x} {
+    * $x 2
+}
+
+test lmap-4 {
+    set l {}
+    for {set i 0} {< $i 3000} {incr $i} {
+	lappend $l [copy $i]
+    }
+    set m [lmap $l x {lmaptwice $x} parallel 1]
+    list [lindex $m 0] [lindex $m 2999]
+} {0 5998}
+
+test lmap-5 {
+    set l {}
+    for {set i 0} {< $i 3000} {incr $i} {
+	lappend $l [copy $i]
+    }
+    catch {lmap $l x {if {= $x 2500} {throw oops}; set x} parallel 1} err
+    lindex [lindex $err 0] 1
+} {oops}
+
+# The forks are used again, so later calls have to see the globals
+# and procs as they are then.  The items the code sees are copies.
+test lmap-6 {
+    global lmapglobal
+    set l {}
+    for {set i 0} {< $i 3000} {incr $i} {
+	lappend $l [copy "v$i"]
+    }
+    set lmapglobal a
+    set a [lmap $l x {set lmapglobal} parallel 1]
+    set lmapglobal b
+    proc lmapsix {x} {append $x z}
+    set b [lmap $l x {list $lmapglobal [lmapsix $x]} parallel 1]
+    list [lindex $a 0] [lindex $b 2999] [lindex $l 2999]
+} {a {b v2999z} v2999}
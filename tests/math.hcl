@@ -80,4 +80,42 @@ test max-2 {
 
 test max-3 {
     max 3.14156 2.14
-} {3.14156}
\ No newline at end of file
+} {3.14156}
+test math-shared-1 {
+    foreach x [+ 1 0] {}
+    append [+ 2 0] x
+    set res [list [llen [+ 1 0]] [+ [+ 1 0] 1] [+ 2 0]]
+    eval [list set y [- 1 1]]
+    lappend $res [strlen [+ 10 0]] [+ [eq 1 1] 1] [+ [- 1 1] 1]
+} {1 2 2 2 2 1}
+
+test math-long-1 {
+    list [+ 10000000000 1] [* 3000000000 2] [max 5 10000000000] \
+	[- 10000000000 10000000000] [abs -10000000000] [incr [copy 1] 10000000000]
+} {10000000001 6000000000 10000000000 0 10000000000 10000000001}
+
+test math-parse-1 {
+    set x [join {0 0 7} ""]
+    set y 1.5
+    append $y 0
+    set z 4
+    append $z 2
+    set res [list [+ $x 1] [+ $y 1] [+ $z 1]]
+    lappend $res $x $y $z
+} {8 2.5 43 007 1.50 42}
+
+test math-overflow-1 {
+    list [+ 2147483647 1] [* 65536 65536] [- -2147483648 1] \
+	[abs -2147483648] [incr [copy 2147483647]]
+} {2147483648 4294967296 -2147483649 2147483648 2147483648}
+
+test math-overflow-2 {
+    set big [* 9223372036854775807 2]
+    list $big [- $big 9223372036854775807] [+ 9223372036854775807 1] \
+	[/ $big 2] [> $big 9223372036854775807] [abs -9223372036854775808]
+} {18446744073709551614 9223372036854775807 9223372036854775808 9223372036854775807 1 9223372036854775808}
+
+test math-overflow-3 {
+    set x [join {1 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0} ""]
+    list [+ $x 1] [- $x $x] [incr $x]
+} {10000000000000000001 0 10000000000000000001}
@@ -48,6 +48,20 @@ test rename-2 {
     list $r $foo
 } {barneybarney {{ERROR {Command 'rn2' does not exist} 2}}}
 
+test rename-3 {
+    proc rn3 {} {return a}
+    set r {}
+    foreach i {1 2 3 4} {
+	lappend $r [catch {rn3} err] $err
+	if { = $i 2 } {
+	    proc rn3 {} {return b}
+	} elseif { = $i 3 } {
+	    rename rn3 rn3gone
+	}
+    }
+    set r
+} {0 a 0 a 0 b 1 {{ERROR {Command 'rn3' does not exist} 1}}}
+
 proc varargproc {a b args} {
     return "$a $b $args"
 }
@@ -80,4 +94,56 @@ test recurse-1 {
 	}
     }
     Recurse 5
-} {<<<<1>>>>}
\ No newline at end of file
+} {<<<<1>>>>}
+
+test locals-1 {
+    proc manylocals {n} {
+	for {set i 0} {< $i $n} {incr $i} {
+	    set v$i [copy $i]
+	}
+	set total 0
+	for {set i 0} {< $i $n} {incr $i} {
+	    incr $total [set v$i]
+	}
+	list $total [set v0] [set v[- $n 1]]
+    }
+    list [manylocals 10] [manylocals 50] [manylocals 3]
+} {{45 0 9} {1225 0 49} {3 0 2}}
+
+test locals-2 {
+    proc setlocal {a} {
+	set b [+ $a 1]
+	unset b
+	catch {set b} err
+	set b 2
+	list $a $b $err
+    }
+    list [setlocal 1] [setlocal 5]
+} {{1 2 {{ERROR {Variable b does not exist}} {set 1}}} {5 2 {{ERROR {Variable b does not exist}} {set 1}}}}
+
+test locals-3 {
+    set body {
+	set x [copy $a]
+	set y 1
+	incr $y
+	incr $x $y
+	list $x $y
+    }
+    proc slots1 {a} $body
+    proc slots2 {z a} $body
+    list [slots1 1] [slots2 0 5] [slots1 2] [slots2 0 6]
+} {{3 2} {7 2} {4 2} {8 2}}
+
+test locals-4 {
+    proc setglobal {} {
+	global slotglobal
+	set slotglobal 2
+	set l 3
+	list $slotglobal $l
+    }
+    proc getglobal {} {
+	global slotglobal
+	set slotglobal
+    }
+    list [setglobal] [getglobal]
+} {{2 3} 2}
@@ -0,0 +1,53 @@
+proc profinner {x} {
+    + $x 1
+}
+
+proc profouter {n} {
+    set res 0
+    for {set i 0} {< $i $n} {incr $i} {
+	set res [profinner $res]
+    }
+    return $res
+}
+
+test profile-1 {
+    profile reset
+    profile start
+    profouter 10
+    profile stop
+    set r [profile results]
+    list [hget [hget $r profouter] calls] [hget [hget $r profinner] calls] \
+	[hget [hget $r profinner] type] [hget [hget $r + ] type]
+} {1 10 proc command}
+
+test profile-2 {
+    # Nothing is recorded while it's stopped.
+    profouter 5
+    hget [hget [profile results] profinner] calls
+} {10}
+
+test profile-3 {
+    set lines [split [profile folded] "\n"]
+    set found 0
+    foreach l $lines {
+	if { eq [lindex [split $l " "] 0] "profouter;for;profinner;+" } {
+	    incr $found
+	}
+    }
+    set found
+} {1}
+
+test profile-4 {
+    set r [hget [profile results] profouter]
+    >= [hget $r inclusive] [hget $r exclusive]
+} {1}
+
+test profile-5 {
+    profile reset
+    hkeys [profile results]
+} {}
+
+test profile-6 {
+    catch {profile bogus} err
+    lindex $err 0
+} {ERROR {Unknown profile option 'bogus'.}}
@@ -67,3 +67,39 @@ test sort-8 {
     }
     sort $lol by proc command badsort
 } {{a b 4} {b c 2} {d e 1} {f g 100} {g h 20} {g h 35}}
+
+test sort-9 {
+    list [sort {b a c a} decreasing 1] \
+	[sort {5 10 1 10 5 2} by int decreasing 1 unique 1] \
+	[sort {b a c a b} unique 1]
+} {{c b a a} {10 5 2 1} {a b c}}
+
+test sort-10 {
+    set lol {{x 3} {y 1} {z 3} {w 2} {v 1}}
+    list [sort $lol by int index 1] \
+	[sort $lol by int index end decreasing 1] \
+	[sort $lol index 0]
+} {{{y 1} {v 1} {w 2} {x 3} {z 3}} {{x 3} {z 3} {w 2} {y 1} {v 1}} {{v 1} {w 2} {x 3} {y 1} {z 3}}}
+
+test sort-11 {
+    set l {}
+    for {set i 0} {< $i 100} {incr $i} {
+	lappend $l [list [% [* $i 37] 10] $i]
+    }
+    set ok 1
+    set prev {-1 -1}
+    foreach e [sort $l by int index 0] {
+	if {or [< [lindex $e 0] [lindex $prev 0]] \
+		[and [= [lindex $e 0] [lindex $prev 0]] \
+		     [< [lindex $e 1] [lindex $prev 1]]]} {
+	    set ok 0
+	}
+	set prev $e
+    }
+    set ok
+} 1
+
+test sort-12 {
+    catch {sort {{a 1} {b}} index 1} err
+    lindex $err 0
+} {ERROR {Element 'b' has no index 1}}
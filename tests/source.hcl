@@ -3,3 +3,37 @@ test source-1 {
     source sourcefile.hcl
     set roger_that
 } {yes}
+
+# Sourcing a script twice with the cache on: the second time, it's
+# read back from the cache, and must run and fail the same way.
+test source-2 {
+    java java.lang.System sys
+    set dir "/tmp/hecl-cache-test-[clock seconds]"
+    set fn "$dir.hcl"
+    set f [open $fn w]
+    $f writeln "set cachedres \[list a {b c} \$x 2.5\]"
+    $f writeln "proc cachedfail {} {"
+    $f writeln "    set y 1"
+    $f writeln ""
+    $f writeln "    nosuchcmd \$y"
+    $f writeln "}"
+    $f writeln "catch cachedfail cachederr"
+    $f close
+
+    sys setproperty hecl.cachedir $dir
+    set res {}
+    set x 1
+    source $fn
+    lappend $res [llen [file.list $dir]] $cachedres $cachederr
+    set x 2
+    source $fn
+    lappend $res [llen [file.list $dir]] $cachedres $cachederr
+    sys clearproperty hecl.cachedir
+
+    foreach cf [file.list $dir] {
+	file.delete [file.join [list $dir $cf]]
+    }
+    file.delete $dir
+    file.delete $fn
+    set res
+} {1 {a {b c} 1 2.5} {{ERROR {Command 'nosuchcmd' does not exist} 4} {cachedfail 1}} 1 {a {b c} 2 2.5} {{ERROR {Command 'nosuchcmd' does not exist} 4} {cachedfail 1}}}
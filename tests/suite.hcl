@@ -18,6 +18,7 @@ testfiles {
     intro.hcl
     after.hcl
     alias.hcl
+    alloc.hcl
     append.hcl
     break.hcl
     catch.hcl
@@ -28,6 +29,7 @@ testfiles {
     files.hcl
     filter.hcl
     for.hcl
+    fork.hcl
     foreach.hcl
     global.hcl
     hash.hcl
@@ -36,16 +38,19 @@ testfiles {
     if.hcl
     incr.hcl
     index.hcl
+    interppool.hcl
     java.hcl
     join.hcl
     list.hcl
     listlen.hcl
+    lmap.hcl
     logic.hcl
     lset.hcl
     math.hcl
     parse.hcl
     path.hcl
     proc.hcl
+    profile.hcl
     return.hcl
     search.hcl
     set.hcl
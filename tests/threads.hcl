@@ -58,3 +58,20 @@ test threads-2 {
     set myres [< 3 [llen $http_event_test]]
     set myres;
 } {1}
+
+# An owned interpreter runs code eval'ed from another thread on its
+# own thread, via the event queue, and hands back the result or the
+# error.
+test threads-3 {
+    set child [[thisinterp] fork]
+    $child setowner $child
+    set res [$child eval {
+	java java.lang.Thread jthread
+	list [jthread currentthread] [+ 1 2]
+    }]
+    set res [list [eq [lindex $res 0] $child] [lindex $res 1]]
+    lappend $res [catch {$child eval {nosuchcmd}} err]
+    lappend $res [> [strfind "Command 'nosuchcmd' does not exist" $err] 0]
+    $child terminate
+    set res
+} {1 3 1 1}